@@ -39,7 +39,7 @@ def send_email(to_email, otp):
         print(f"Failed to send email: {e}")
         sys.exit(1)
 
-def update_user_otp(email, otp):
+def update_user_otp(email, tenant_id, otp):
     expiry = datetime.now() + timedelta(minutes=5)
     try:
         conn = psycopg2.connect(
@@ -51,8 +51,8 @@ def update_user_otp(email, otp):
         )
         cursor = conn.cursor()
         cursor.execute("""
-            UPDATE users SET otp = %s, otp_expiry = %s WHERE email = %s
-        """, (otp, expiry, email))
+            UPDATE users SET otp = %s, otp_expiry = %s WHERE email = %s AND tenant_id = %s
+        """, (otp, expiry, email, tenant_id))
         conn.commit()
         cursor.close()
         conn.close()
@@ -62,12 +62,13 @@ def update_user_otp(email, otp):
         sys.exit(1)
 
 if __name__ == "__main__":
-    if len(sys.argv) != 2:
-        print("Usage: python otp_script.py <email>")
+    if len(sys.argv) not in (2, 3):
+        print("Usage: python otp_script.py <email> [tenant_id]")
         sys.exit(1)
 
     email = sys.argv[1]
+    tenant_id = sys.argv[2] if len(sys.argv) == 3 else "default"
     otp = generate_otp()
-    update_user_otp(email, otp)
+    update_user_otp(email, tenant_id, otp)
     send_email(email, otp)
     print(f"OTP {otp} generated and sent to {email}")
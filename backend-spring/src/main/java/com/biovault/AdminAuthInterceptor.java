@@ -0,0 +1,92 @@
+package com.biovault;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bearer-token check for {@code /api/admin/**}. The {@code admin.token} holder may call
+ * every admin endpoint for every tenant. A token from {@code admin.tenant-tokens} only
+ * lists and exports its own tenant's users; the controller reads that tenant from
+ * {@link #ADMIN_TENANT}. With no tokens configured every admin call is refused.
+ */
+@Component
+public class AdminAuthInterceptor implements HandlerInterceptor {
+
+    /** Request attribute: the tenant a tenant admin token is limited to; absent for the operator token. */
+    public static final String ADMIN_TENANT = "com.biovault.AdminAuthInterceptor.tenant";
+
+    private static final Set<String> TENANT_ADMIN_PATHS = Set.of("/api/admin/users", "/api/admin/users/export");
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final byte[] operatorToken;
+    private final Map<String, byte[]> tenantTokens = new HashMap<>();
+
+    public AdminAuthInterceptor(@Value("${admin.token:}") String operatorToken,
+                                @Value("${admin.tenant-tokens:}") String[] tenantTokens) {
+        this.operatorToken = operatorToken.isEmpty() ? null : operatorToken.getBytes(StandardCharsets.UTF_8);
+        for (String entry : tenantTokens) {
+            int colon = entry.indexOf(':');
+            if (colon <= 0 || colon == entry.length() - 1 || !Tenants.isValidId(entry.substring(0, colon).trim())) {
+                throw new IllegalArgumentException("admin.tenant-tokens entries must be <tenant>:<token>");
+            }
+            this.tenantTokens.put(entry.substring(0, colon).trim(), entry.substring(colon + 1).trim().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    AdminAuthInterceptor(ObjectMapper objectMapper, String operatorToken, String... tenantTokens) {
+        this(operatorToken, tenantTokens);
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header == null || !header.startsWith("Bearer ")) {
+            return refuse(response, HttpStatus.UNAUTHORIZED, "Admin token required");
+        }
+        byte[] presented = header.substring("Bearer ".length()).trim().getBytes(StandardCharsets.UTF_8);
+        if (operatorToken != null && MessageDigest.isEqual(operatorToken, presented)) {
+            return true;
+        }
+        // Every entry is compared, so the time taken doesn't reveal which tenant matched
+        String tenant = null;
+        for (Map.Entry<String, byte[]> entry : tenantTokens.entrySet()) {
+            if (MessageDigest.isEqual(entry.getValue(), presented)) {
+                tenant = entry.getKey();
+            }
+        }
+        if (tenant == null) {
+            return refuse(response, HttpStatus.UNAUTHORIZED, "Invalid admin token");
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (!TENANT_ADMIN_PATHS.contains(path)) {
+            return refuse(response, HttpStatus.FORBIDDEN, "Tenant admin tokens may only list and export users");
+        }
+        request.setAttribute(ADMIN_TENANT, tenant);
+        return true;
+    }
+
+    private boolean refuse(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), Map.of("success", false, "message", message));
+        return false;
+    }
+}
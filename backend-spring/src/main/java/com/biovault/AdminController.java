@@ -0,0 +1,257 @@
+package com.biovault;
+
+import com.biovault.config.ReplicaRoutingDataSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin")
+public class AdminController {
+
+    // Only present when biovault.datasource.routing.enabled=true
+    @Autowired(required = false)
+    private ReplicaRoutingDataSource replicaRoutingDataSource;
+
+    @Autowired
+    private Bulkheads bulkheads;
+
+    @Autowired
+    private UnlockTicketService unlockTickets;
+
+    @Autowired
+    private ProfilingService profilingService;
+
+    @Autowired
+    private ReenrollmentJob reenrollmentJob;
+
+    @Autowired
+    private UserExportService userExportService;
+
+    // Only present when invalidation.enabled=true
+    @Autowired(required = false)
+    private InvalidationListener invalidationListener;
+
+    @Autowired
+    private ApplicationAvailability availability;
+
+    // Only present when warmup.enabled=true
+    @Autowired(required = false)
+    private WarmupRunner warmupRunner;
+
+    /** Readiness probe for the load balancer: 503 until startup (including JIT warm-up) is done. */
+    @GetMapping("/readiness")
+    public ResponseEntity<?> readiness() {
+        ReadinessState state = availability.getReadinessState();
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("readiness", state);
+        if (warmupRunner != null) {
+            body.put("warmup", warmupRunner.getReport());
+        }
+        HttpStatus status = state == ReadinessState.ACCEPTING_TRAFFIC ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE;
+        return ResponseEntity.status(status).body(body);
+    }
+
+    @GetMapping("/datasource/routes")
+    public ResponseEntity<?> datasourceRoutes() {
+        if (replicaRoutingDataSource == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(Map.of("success", false, "message", "Replica routing is not enabled"));
+        }
+        return ResponseEntity.ok(replicaRoutingDataSource.routeStats());
+    }
+
+    @GetMapping("/bulkheads")
+    public ResponseEntity<?> bulkheads() {
+        return ResponseEntity.ok(bulkheads.stats());
+    }
+
+    /** Cross-node invalidation: notifications received and applied, reconnects, last commit-to-apply delay. */
+    @GetMapping("/invalidation")
+    public ResponseEntity<?> invalidation() {
+        if (invalidationListener == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(Map.of("success", false, "message", "Cross-node invalidation is not enabled"));
+        }
+        return ResponseEntity.ok(invalidationListener.stats());
+    }
+
+    @GetMapping("/unlock-tickets")
+    public ResponseEntity<?> unlockTickets() {
+        return ResponseEntity.ok(unlockTickets.stats());
+    }
+
+    @GetMapping("/profiling")
+    public ResponseEntity<?> profilingStatus() {
+        return ResponseEntity.ok(profilingService.status());
+    }
+
+    /** Starts a bounded JFR recording including the auth stage events. */
+    @PostMapping("/profiling/start")
+    public ResponseEntity<?> startProfiling(@RequestParam(defaultValue = "default") String settings,
+                                            @RequestParam(defaultValue = "300") long durationSeconds) {
+        try {
+            return ResponseEntity.ok(profilingService.start(settings, durationSeconds));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "message", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("success", false, "message", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("success", false, "message", "Could not start recording: " + e.getMessage()));
+        }
+    }
+
+    /** Stops the recording and streams it as a .jfr file (open with JDK Mission Control or `jfr print`). */
+    @PostMapping("/profiling/stop")
+    public ResponseEntity<?> stopProfiling() throws IOException {
+        try {
+            return jfrFile(profilingService.stop());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("success", false, "message", e.getMessage()));
+        }
+    }
+
+    /** Streams what has been recorded so far; the recording keeps running. */
+    @GetMapping("/profiling/snapshot")
+    public ResponseEntity<?> profilingSnapshot() throws IOException {
+        try {
+            return jfrFile(profilingService.snapshot());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("success", false, "message", e.getMessage()));
+        }
+    }
+
+    /** Keyset-paginated user listing; follow nextCursor (null on the last page) with ?after=. */
+    @GetMapping("/users")
+    public ResponseEntity<?> listUsers(@RequestAttribute(name = AdminAuthInterceptor.ADMIN_TENANT, required = false) String adminTenant,
+                                       @RequestParam(required = false) String tenant,
+                                       @RequestParam(defaultValue = "0") long after,
+                                       @RequestParam(defaultValue = "100") int limit) {
+        String scope;
+        try {
+            scope = userScope(adminTenant, tenant);
+        } catch (Tenants.InvalidTenantException e) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "message", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("success", false, "message", e.getMessage()));
+        }
+        return ResponseEntity.ok(userExportService.list(scope, after, limit));
+    }
+
+    /**
+     * The tenant whose users a request may see: a tenant admin only ever their own, the
+     * operator the requested one, or every tenant if none is given.
+     */
+    private static String userScope(String adminTenant, String tenant) {
+        if (tenant != null && !Tenants.isValidId(tenant)) {
+            throw new Tenants.InvalidTenantException(tenant);
+        }
+        if (adminTenant == null) {
+            return tenant;
+        }
+        if (tenant != null && !tenant.equals(adminTenant)) {
+            throw new IllegalArgumentException("This token can only see tenant '" + adminTenant + "'");
+        }
+        return adminTenant;
+    }
+
+    /**
+     * Streams all users (or one tenant's) as NDJSON or CSV in id order. Memory use doesn't
+     * depend on the table size; a broken download can resume with ?after=<last id>.
+     */
+    @GetMapping("/users/export")
+    public ResponseEntity<?> exportUsers(@RequestAttribute(name = AdminAuthInterceptor.ADMIN_TENANT, required = false) String adminTenant,
+                                         @RequestParam(required = false) String tenant,
+                                         @RequestParam(defaultValue = "0") long after,
+                                         @RequestParam(defaultValue = "ndjson") String format) {
+        String scope;
+        try {
+            scope = userScope(adminTenant, tenant);
+        } catch (Tenants.InvalidTenantException e) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "message", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("success", false, "message", e.getMessage()));
+        }
+        UserExportService.Format exportFormat;
+        try {
+            exportFormat = UserExportService.Format.parse(format);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "message", e.getMessage()));
+        }
+        StreamingResponseBody body = out -> userExportService.export(scope, after, exportFormat, out);
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType(exportFormat.contentType()))
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"users." + exportFormat.extension() + "\"")
+            .body(body);
+    }
+
+    @GetMapping("/reenrollment")
+    public ResponseEntity<?> reenrollmentStatus() {
+        return ResponseEntity.ok(reenrollmentJob.status());
+    }
+
+    /** Re-embeds all enrollment images into a new face model version; resumes if that version was interrupted. */
+    @PostMapping("/reenrollment/start")
+    public ResponseEntity<?> startReenrollment(@RequestParam String version) {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(reenrollmentJob.start(version));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "message", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("success", false, "message", e.getMessage()));
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("success", false, "message", "Could not start re-enrollment: " + e.getMessage()));
+        }
+    }
+
+    @PostMapping("/reenrollment/cancel")
+    public ResponseEntity<?> cancelReenrollment() {
+        try {
+            return ResponseEntity.ok(reenrollmentJob.cancel());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("success", false, "message", e.getMessage()));
+        }
+    }
+
+    /** Switches to the new version even though some images failed; those users must enroll again. */
+    @PostMapping("/reenrollment/switch")
+    public ResponseEntity<?> switchReenrollment() {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(reenrollmentJob.forceSwitch());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("success", false, "message", e.getMessage()));
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("success", false, "message", "Could not start the switch: " + e.getMessage()));
+        }
+    }
+
+    private static ResponseEntity<StreamingResponseBody> jfrFile(Path file) throws IOException {
+        StreamingResponseBody body = out -> {
+            try {
+                Files.copy(file, out);
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        };
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_OCTET_STREAM)
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + file.getFileName() + "\"")
+            .contentLength(Files.size(file))
+            .body(body);
+    }
+}
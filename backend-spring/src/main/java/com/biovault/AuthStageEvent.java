@@ -0,0 +1,92 @@
+package com.biovault;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.function.Supplier;
+
+/**
+ * Java Flight Recorder event spanning one stage of an authentication request, so
+ * recordings can line allocation, lock and I/O events up with the stage they happened
+ * in. Attributes identify the endpoint, factor and stage only, never the user.
+ *
+ * When no recording has the event enabled, {@link #time} just runs the stage.
+ */
+@Name("com.biovault.AuthStage")
+@Label("Auth Stage")
+@Category({ "BioVault", "Authentication" })
+@Description("One stage of an authentication request")
+@StackTrace(false)
+public class AuthStageEvent extends Event {
+
+    public static final String DB_LOOKUP = "db-lookup";
+    public static final String DOWNSTREAM_CALL = "downstream-call";
+    public static final String HASHING = "hashing";
+    public static final String TOKEN_ISSUE = "token-issue";
+
+    @Label("Endpoint")
+    private String endpoint;
+
+    @Label("Factor")
+    @Description("face, voice, otp or login")
+    private String factor;
+
+    @Label("Stage")
+    private String stage;
+
+    @Label("Outcome")
+    @Description("ok, error or cancelled")
+    private String outcome;
+
+    public AuthStageEvent() {
+    }
+
+    AuthStageEvent(String endpoint, String factor, String stage) {
+        this.endpoint = endpoint;
+        this.factor = factor;
+        this.stage = stage;
+    }
+
+    /** Times a blocking stage; rethrows whatever the stage throws. */
+    public static <T, E extends Exception> T time(String endpoint, String factor, String stage, Stage<T, E> work) throws E {
+        AuthStageEvent event = new AuthStageEvent(endpoint, factor, stage);
+        if (!event.isEnabled()) {
+            return work.run();
+        }
+        event.begin();
+        event.outcome = "error";
+        try {
+            T result = work.run();
+            event.outcome = "ok";
+            return result;
+        } finally {
+            event.commit();
+        }
+    }
+
+    /** Times a reactive stage from subscription until it completes, fails or is cancelled. */
+    public static <T> Mono<T> timeMono(String endpoint, String factor, String stage, Supplier<Mono<T>> work) {
+        return Mono.defer(() -> {
+            AuthStageEvent event = new AuthStageEvent(endpoint, factor, stage);
+            if (!event.isEnabled()) {
+                return work.get();
+            }
+            event.begin();
+            return work.get().doFinally(signal -> {
+                event.outcome = signal == SignalType.ON_ERROR ? "error" : signal == SignalType.CANCEL ? "cancelled" : "ok";
+                event.commit();
+            });
+        });
+    }
+
+    @FunctionalInterface
+    public interface Stage<T, E extends Exception> {
+        T run() throws E;
+    }
+}
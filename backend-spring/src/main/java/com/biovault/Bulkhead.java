@@ -0,0 +1,163 @@
+package com.biovault;
+
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Isolates one authentication factor. Blocking work ({@link #call}) runs on the
+ * factor's own fixed pool with a bounded queue; non-blocking work ({@link #guard}) is
+ * limited by a semaphore. Either way a full bulkhead rejects immediately and a slow
+ * call is abandoned after the factor's timeout, so a stalled backend only ever ties
+ * up its own threads.
+ */
+public class Bulkhead {
+
+    private final String name;
+    private final int maxConcurrent;
+    private final int queueCapacity;
+    private final Duration timeout;
+    private final ThreadPoolExecutor executor;
+    private final Semaphore permits;
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+
+    public Bulkhead(String name, int maxConcurrent, int queueCapacity, Duration timeout) {
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.queueCapacity = queueCapacity;
+        this.timeout = timeout;
+        this.permits = new Semaphore(maxConcurrent);
+        AtomicInteger threadCount = new AtomicInteger();
+        BlockingQueue<Runnable> queue = queueCapacity == 0 ? new SynchronousQueue<>() : new ArrayBlockingQueue<>(queueCapacity);
+        this.executor = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 0, TimeUnit.MILLISECONDS, queue, r -> {
+            Thread t = new Thread(r, "bulkhead-" + name + "-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Runs a blocking task on this bulkhead's pool and waits up to the timeout for it.
+     * The caller's thread waits, but never longer than the timeout, and a hung task is
+     * interrupted rather than left holding a worker.
+     */
+    public <T> T call(Callable<T> task) throws Exception {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new BulkheadFullException(name);
+        }
+        try {
+            T result = future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            completed.increment();
+            return result;
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            executor.purge();
+            timedOut.increment();
+            throw new BulkheadTimeoutException(name, timeout);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw e;
+        } catch (ExecutionException e) {
+            completed.increment();
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Limits concurrent subscriptions to a non-blocking call. Nothing is queued: a
+     * reactive call holds no thread while it waits, so over the limit means the
+     * downstream is already saturated.
+     */
+    public <T> Mono<T> guard(Supplier<Mono<T>> call) {
+        return Mono.defer(() -> {
+            if (!permits.tryAcquire()) {
+                rejected.increment();
+                return Mono.error(new BulkheadFullException(name));
+            }
+            return call.get()
+                .timeout(timeout, Mono.error(() -> {
+                    timedOut.increment();
+                    return new BulkheadTimeoutException(name, timeout);
+                }))
+                .doOnSuccess(v -> completed.increment())
+                .doFinally(signal -> permits.release());
+        });
+    }
+
+    /** Saturation figures for the admin endpoint. */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        int active = executor.getActiveCount() + (maxConcurrent - permits.availablePermits());
+        stats.put("maxConcurrent", maxConcurrent);
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("timeoutMs", timeout.toMillis());
+        stats.put("active", active);
+        stats.put("queued", executor.getQueue().size());
+        stats.put("saturation", (double) active / maxConcurrent);
+        stats.put("completed", completed.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("timedOut", timedOut.sum());
+        return stats;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /** Base class so callers can map both failures to one response shape. */
+    public abstract static class BulkheadException extends RuntimeException {
+        private final String bulkhead;
+
+        protected BulkheadException(String bulkhead, String message) {
+            super(message);
+            this.bulkhead = bulkhead;
+        }
+
+        public String getBulkhead() { return bulkhead; }
+    }
+
+    /** The factor already has as many calls running and queued as it is allowed. */
+    public static class BulkheadFullException extends BulkheadException {
+        public BulkheadFullException(String bulkhead) {
+            super(bulkhead, "Too many concurrent " + bulkhead + " requests");
+        }
+    }
+
+    /** The factor's backend did not answer within its timeout. */
+    public static class BulkheadTimeoutException extends BulkheadException {
+        public BulkheadTimeoutException(String bulkhead, Duration timeout) {
+            super(bulkhead, bulkhead + " did not respond within " + timeout.toMillis() + " ms");
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.biovault;
+
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One {@link Bulkhead} per authentication factor, so a stall in face-auth, the voice
+ * backend, the OTP mailer or the login lookup can't starve the other factors of
+ * servlet threads. Each is configured under {@code bulkhead.<factor>.*}:
+ * {@code max-concurrent}, {@code queue-capacity} and {@code timeout-ms}.
+ */
+@Component
+public class Bulkheads {
+
+    public static final String FACE = "face";
+    public static final String VOICE = "voice";
+    public static final String OTP = "otp";
+    public static final String LOGIN = "login";
+
+    private final Map<String, Bulkhead> bulkheads = new LinkedHashMap<>();
+
+    public Bulkheads(Environment env) {
+        // Defaults: face calls are non-blocking (no queue); OTP runs a script that sends mail
+        bulkheads.put(FACE, create(env, FACE, 32, 0, 5000));
+        bulkheads.put(VOICE, create(env, VOICE, 4, 8, 5000));
+        bulkheads.put(OTP, create(env, OTP, 4, 16, 15000));
+        bulkheads.put(LOGIN, create(env, LOGIN, 16, 32, 2000));
+    }
+
+    private static Bulkhead create(Environment env, String factor, int maxConcurrent, int queueCapacity, long timeoutMs) {
+        String prefix = "bulkhead." + factor + ".";
+        return new Bulkhead(factor,
+            env.getProperty(prefix + "max-concurrent", Integer.class, maxConcurrent),
+            env.getProperty(prefix + "queue-capacity", Integer.class, queueCapacity),
+            Duration.ofMillis(env.getProperty(prefix + "timeout-ms", Long.class, timeoutMs)));
+    }
+
+    public Bulkhead get(String factor) {
+        Bulkhead bulkhead = bulkheads.get(factor);
+        if (bulkhead == null) {
+            throw new IllegalArgumentException("No bulkhead for " + factor);
+        }
+        return bulkhead;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        bulkheads.forEach((factor, bulkhead) -> stats.put(factor, bulkhead.stats()));
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        bulkheads.values().forEach(Bulkhead::shutdown);
+    }
+}
@@ -0,0 +1,22 @@
+package com.biovault;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exits the JVM as soon as the application is ready. Used by the startup profile's
+ * training run so that -XX:ArchiveClassesAtExit can dump the AppCDS archive.
+ */
+@Component
+@ConditionalOnProperty(name = "startup.cds.training", havingValue = "true")
+public class CdsTrainingRun implements ApplicationListener<ApplicationReadyEvent> {
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        System.out.println("CDS training run complete, exiting");
+        System.exit(SpringApplication.exit(event.getApplicationContext()));
+    }
+}
@@ -0,0 +1,205 @@
+package com.biovault;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Read-only, memory-mapped snapshot of enrolled face embeddings.
+ *
+ * File layout (little-endian):
+ * <pre>
+ * header  magic "BVES" | u32 version | u32 dimension | u32 count | u64 matrix offset | u32 body CRC32 | u32 reserved
+ * body    count x (u16 length | UTF-8 user id), zero padding to a 4-byte boundary,
+ *         then a count x dimension float32 matrix, one row per user id in table order
+ * </pre>
+ * Opening maps the file, checks the body CRC32 and builds the user index. The checksum
+ * reads the whole file once, so startup cost still grows with the snapshot, but it is
+ * one sequential read with no parsing: rows are read straight from the mapping and only
+ * the index lives on the heap. A single mapping is limited to 2 GB, so a snapshot
+ * (roughly count x dimension x 4 bytes) must stay below {@link #MAX_FILE_BYTES}.
+ */
+public final class EmbeddingSnapshot {
+
+    static final int MAGIC = 0x53455642; // "BVES" read as a little-endian int
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 32;
+    // FileChannel.map can't map more than Integer.MAX_VALUE bytes at once
+    static final long MAX_FILE_BYTES = Integer.MAX_VALUE;
+
+    private final int dimension;
+    private final String[] userIds;
+    private final Map<String, Integer> rows;
+    private final FloatBuffer matrix;
+
+    private EmbeddingSnapshot(int dimension, String[] userIds, Map<String, Integer> rows, FloatBuffer matrix) {
+        this.dimension = dimension;
+        this.userIds = userIds;
+        this.rows = rows;
+        this.matrix = matrix;
+    }
+
+    public static EmbeddingSnapshot empty(int dimension) {
+        return new EmbeddingSnapshot(dimension, new String[0], Collections.emptyMap(), FloatBuffer.allocate(0));
+    }
+
+    public static EmbeddingSnapshot open(Path file) throws IOException {
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > MAX_FILE_BYTES) {
+                throw new IOException("Snapshot is larger than 2 GB and can't be mapped: " + file);
+            }
+            // The mapping stays valid after the channel is closed
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        ByteBuffer in = mapped.order(ByteOrder.LITTLE_ENDIAN);
+        if (in.remaining() < HEADER_BYTES || in.getInt(0) != MAGIC) {
+            throw new IOException("Not an embedding snapshot: " + file);
+        }
+        int version = in.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version + ": " + file);
+        }
+        int dimension = in.getInt(8);
+        int count = in.getInt(12);
+        long matrixOffset = in.getLong(16);
+        int expectedCrc = in.getInt(24);
+        if (matrixOffset + (long) count * dimension * Float.BYTES != in.capacity()) {
+            throw new IOException("Snapshot size doesn't match its header: " + file);
+        }
+
+        CRC32 crc = new CRC32();
+        ByteBuffer body = in.duplicate();
+        body.position(HEADER_BYTES);
+        crc.update(body);
+        if ((int) crc.getValue() != expectedCrc) {
+            throw new IOException("Snapshot checksum mismatch: " + file);
+        }
+
+        String[] userIds = new String[count];
+        Map<String, Integer> rows = new HashMap<>(count * 2);
+        ByteBuffer table = in.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        table.position(HEADER_BYTES);
+        for (int i = 0; i < count; i++) {
+            byte[] id = new byte[table.getShort() & 0xFFFF];
+            table.get(id);
+            userIds[i] = new String(id, StandardCharsets.UTF_8);
+            rows.put(userIds[i], i);
+        }
+
+        ByteBuffer matrixBytes = in.duplicate();
+        matrixBytes.position((int) matrixOffset);
+        FloatBuffer matrix = matrixBytes.slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+        return new EmbeddingSnapshot(dimension, userIds, rows, matrix);
+    }
+
+    /**
+     * Writes a snapshot of {@code embeddings} to {@code file}, replacing it. Callers that
+     * need the switch to be atomic write to a temporary file and move it into place.
+     */
+    public static void write(Path file, int dimension, Map<String, float[]> embeddings) throws IOException {
+        String[] userIds = embeddings.keySet().toArray(new String[0]);
+        byte[][] encodedIds = new byte[userIds.length][];
+        long tableBytes = 0;
+        for (int i = 0; i < userIds.length; i++) {
+            encodedIds[i] = userIds[i].getBytes(StandardCharsets.UTF_8);
+            if (encodedIds[i].length > 0xFFFF) {
+                throw new IllegalArgumentException("User id too long: " + userIds[i]);
+            }
+            tableBytes += 2 + encodedIds[i].length;
+        }
+        long matrixOffset = HEADER_BYTES + tableBytes;
+        int padding = (int) ((Float.BYTES - matrixOffset % Float.BYTES) % Float.BYTES);
+        matrixOffset += padding;
+        if (matrixOffset + (long) userIds.length * dimension * Float.BYTES > MAX_FILE_BYTES) {
+            // Refuse here rather than write a file that open() can't map
+            throw new IllegalArgumentException("Snapshot of " + userIds.length + " x " + dimension + " embeddings exceeds 2 GB");
+        }
+
+        CRC32 crc = new CRC32();
+        ByteBuffer chunk = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.position(HEADER_BYTES);
+            for (byte[] id : encodedIds) {
+                if (chunk.remaining() < 2 + id.length) {
+                    flush(out, chunk, crc);
+                }
+                chunk.putShort((short) id.length).put(id);
+            }
+            for (int i = 0; i < padding; i++) {
+                chunk.put((byte) 0);
+            }
+            for (String userId : userIds) {
+                float[] row = embeddings.get(userId);
+                if (row.length != dimension) {
+                    throw new IllegalArgumentException("Embedding for " + userId + " has " + row.length + " values, expected " + dimension);
+                }
+                if (chunk.remaining() < row.length * Float.BYTES) {
+                    flush(out, chunk, crc);
+                }
+                for (float value : row) {
+                    chunk.putFloat(value);
+                }
+            }
+            flush(out, chunk, crc);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(dimension).putInt(userIds.length)
+                .putLong(matrixOffset).putInt((int) crc.getValue()).putInt(0);
+            header.flip();
+            out.write(header, 0);
+            out.force(true);
+        }
+    }
+
+    private static void flush(FileChannel out, ByteBuffer chunk, CRC32 crc) throws IOException {
+        chunk.flip();
+        crc.update(chunk.duplicate());
+        while (chunk.hasRemaining()) {
+            out.write(chunk);
+        }
+        chunk.clear();
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    public int size() {
+        return userIds.length;
+    }
+
+    public String userIdAt(int row) {
+        return userIds[row];
+    }
+
+    public float[] row(int row) {
+        float[] values = new float[dimension];
+        int base = row * dimension;
+        for (int i = 0; i < dimension; i++) {
+            values[i] = matrix.get(base + i);
+        }
+        return values;
+    }
+
+    public boolean contains(String userId) {
+        return rows.containsKey(userId);
+    }
+
+    /** The user's embedding, or null if the snapshot doesn't contain them. */
+    public float[] get(String userId) {
+        Integer row = rows.get(userId);
+        return row == null ? null : row(row);
+    }
+}
@@ -0,0 +1,419 @@
+package com.biovault;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Enrolled face embeddings kept on local disk so the backend can warm-start without
+ * pulling every embedding from face-auth's MongoDB.
+ *
+ * State is an {@link EmbeddingSnapshot} plus an append-only delta log of enrolls and
+ * deletes made since it was written. On startup the snapshot is mapped and the log
+ * replayed over it; a background task periodically folds the log into a new snapshot.
+ *
+ * Delta log header (little-endian): u32 magic "BVDL" | u32 version | u32 dimension
+ * Delta record (little-endian): u8 op | u16 user id length | user id | [dimension x float32 for enrolls] | u32 CRC32
+ */
+@Component
+@ConditionalOnProperty(name = "embeddings.store.enabled", havingValue = "true")
+public class EmbeddingStore {
+
+    static final String SNAPSHOT_FILE = "embeddings.snapshot";
+    static final String DELTA_FILE = "embeddings.delta";
+
+    private static final byte OP_ENROLL = 1;
+    private static final byte OP_DELETE = 2;
+
+    static final int DELTA_MAGIC = 0x4C445642; // "BVDL" read as a little-endian int
+    static final int DELTA_VERSION = 1;
+    static final int DELTA_HEADER_BYTES = 12;
+    private static final int MAX_ID_BYTES = 0xFFFF;
+
+    @Value("${embeddings.store.dir:data/embeddings}")
+    private String directory;
+
+    // Changes when a snapshot of another size is adopted
+    @Value("${embeddings.store.dimension:128}")
+    private volatile int dimension;
+
+    @Value("${embeddings.store.compaction-interval-seconds:300}")
+    private long compactionIntervalSeconds;
+
+    @Value("${embeddings.store.compaction-min-delta-records:1000}")
+    private int compactionMinDeltaRecords;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Path snapshotPath;
+    private Path deltaPath;
+    private EmbeddingSnapshot snapshot;
+    // Changes since the snapshot; an id in both maps can't happen
+    private final Map<String, float[]> enrolled = new HashMap<>();
+    private final Set<String> deleted = new HashSet<>();
+    private int deltaRecords;
+    private FileChannel deltaLog;
+    private ScheduledExecutorService compactor;
+
+    public EmbeddingStore() {
+    }
+
+    EmbeddingStore(String directory, int dimension) {
+        this.directory = directory;
+        this.dimension = dimension;
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        long start = System.nanoTime();
+        Path dir = Paths.get(directory);
+        Files.createDirectories(dir);
+        snapshotPath = dir.resolve(SNAPSHOT_FILE);
+        deltaPath = dir.resolve(DELTA_FILE);
+
+        // The files decide the size; the configured dimension only applies to a new store,
+        // since adopting another model's snapshot changes it without touching the configuration
+        int stored = storedDimension(dir);
+        if (stored > 0 && stored != dimension) {
+            System.out.println("Embedding store on disk has dimension " + stored + ", using it instead of the configured " + dimension);
+            dimension = stored;
+        }
+        snapshot = Files.exists(snapshotPath) ? EmbeddingSnapshot.open(snapshotPath) : EmbeddingSnapshot.empty(dimension);
+        if (snapshot.size() > 0 && snapshot.dimension() != dimension) {
+            throw new IllegalStateException("Snapshot has dimension " + snapshot.dimension() + ", delta log " + dimension);
+        }
+        deltaLog = FileChannel.open(deltaPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        replayDeltaLog();
+        System.out.printf("Embedding store loaded %d users (%d delta records) in %.1f ms%n",
+            size(), deltaRecords, (System.nanoTime() - start) / 1e6);
+
+        if (compactionIntervalSeconds > 0) {
+            compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "embedding-compactor");
+                t.setDaemon(true);
+                return t;
+            });
+            compactor.scheduleWithFixedDelay(this::compactIfNeeded, compactionIntervalSeconds, compactionIntervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (compactor != null) {
+            compactor.shutdownNow();
+        }
+        lock.writeLock().lock();
+        try {
+            deltaLog.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public float[] get(String userId) {
+        lock.readLock().lock();
+        try {
+            float[] embedding = enrolled.get(userId);
+            if (embedding != null) {
+                return embedding.clone();
+            }
+            return deleted.contains(userId) ? null : snapshot.get(userId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    Path snapshotFile() {
+        return snapshotPath;
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            int size = snapshot.size() + enrolled.size() - deleted.size();
+            for (String userId : enrolled.keySet()) {
+                if (snapshot.contains(userId)) {
+                    size--;
+                }
+            }
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void enroll(String userId, float[] embedding) throws IOException {
+        byte[] id = encodeId(userId);
+        lock.writeLock().lock();
+        try {
+            if (embedding.length != dimension) {
+                throw new IllegalArgumentException("Expected " + dimension + " values, got " + embedding.length);
+            }
+            appendRecord(OP_ENROLL, id, embedding);
+            applyEnroll(userId, embedding.clone());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void delete(String userId) throws IOException {
+        byte[] id = encodeId(userId);
+        lock.writeLock().lock();
+        try {
+            appendRecord(OP_DELETE, id, null);
+            applyDelete(userId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void applyEnroll(String userId, float[] embedding) {
+        deleted.remove(userId);
+        enrolled.put(userId, embedding);
+    }
+
+    private void applyDelete(String userId) {
+        enrolled.remove(userId);
+        if (snapshot.contains(userId)) {
+            deleted.add(userId);
+        }
+    }
+
+    private static byte[] encodeId(String userId) {
+        byte[] id = userId.getBytes(StandardCharsets.UTF_8);
+        // The record stores the length in 16 bits; a longer id would corrupt the log
+        if (id.length > MAX_ID_BYTES) {
+            throw new IllegalArgumentException("User id is " + id.length + " bytes, at most " + MAX_ID_BYTES + " allowed");
+        }
+        return id;
+    }
+
+    private void appendRecord(byte op, byte[] id, float[] embedding) throws IOException {
+        int payload = embedding == null ? 0 : embedding.length * Float.BYTES;
+        ByteBuffer record = ByteBuffer.allocate(1 + 2 + id.length + payload + 4).order(ByteOrder.LITTLE_ENDIAN);
+        record.put(op).putShort((short) id.length).put(id);
+        if (embedding != null) {
+            for (float value : embedding) {
+                record.putFloat(value);
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 0, record.position());
+        record.putInt((int) crc.getValue());
+        record.flip();
+        deltaLog.position(deltaLog.size());
+        while (record.hasRemaining()) {
+            deltaLog.write(record);
+        }
+        deltaLog.force(false);
+        deltaRecords++;
+    }
+
+    /** Empties the delta log, leaving only a header for the current dimension. */
+    private void resetDeltaLog() throws IOException {
+        deltaLog.truncate(0);
+        ByteBuffer header = ByteBuffer.allocate(DELTA_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(DELTA_MAGIC).putInt(DELTA_VERSION).putInt(dimension).flip();
+        while (header.hasRemaining()) {
+            deltaLog.write(header, DELTA_HEADER_BYTES - header.remaining());
+        }
+        deltaLog.force(true);
+    }
+
+    /** Rewrites the log from the in-memory changes, after a failed switch emptied it. */
+    private void restoreDeltaLog() throws IOException {
+        resetDeltaLog();
+        deltaRecords = 0;
+        for (Map.Entry<String, float[]> entry : enrolled.entrySet()) {
+            appendRecord(OP_ENROLL, encodeId(entry.getKey()), entry.getValue());
+        }
+        for (String userId : deleted) {
+            appendRecord(OP_DELETE, encodeId(userId), null);
+        }
+    }
+
+    /** Dimension of the store already in {@code directory}, or 0 if there is none yet. */
+    static int storedDimension(Path directory) throws IOException {
+        Path delta = directory.resolve(DELTA_FILE);
+        if (Files.exists(delta) && Files.size(delta) >= DELTA_HEADER_BYTES) {
+            ByteBuffer header = ByteBuffer.allocate(DELTA_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            try (FileChannel log = FileChannel.open(delta, StandardOpenOption.READ)) {
+                while (header.hasRemaining() && log.read(header) > 0) {
+                    // header is only a few bytes
+                }
+            }
+            if (header.getInt(0) == DELTA_MAGIC) {
+                return header.getInt(8);
+            }
+        }
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        return Files.exists(snapshot) ? EmbeddingSnapshot.open(snapshot).dimension() : 0;
+    }
+
+    private void replayDeltaLog() throws IOException {
+        ByteBuffer log = ByteBuffer.allocate((int) deltaLog.size()).order(ByteOrder.LITTLE_ENDIAN);
+        while (log.hasRemaining() && deltaLog.read(log, log.position()) > 0) {
+            // keep reading until the whole log is in memory
+        }
+        log.flip();
+        if (log.limit() < DELTA_HEADER_BYTES) {
+            // New, or a crash while the header was being written; there are no records yet
+            resetDeltaLog();
+            return;
+        }
+        if (log.getInt() != DELTA_MAGIC || log.getInt() != DELTA_VERSION) {
+            throw new IllegalStateException("Not a delta log this version can read: " + deltaPath);
+        }
+        int logDimension = log.getInt();
+        if (logDimension != dimension) {
+            // Replaying with the wrong record size would misread, then truncate, every record
+            throw new IllegalStateException("Delta log has dimension " + logDimension + ", configured " + dimension);
+        }
+        int validEnd = log.position();
+        while (log.remaining() >= 3) {
+            int start = log.position();
+            byte op = log.get();
+            int idLength = log.getShort() & 0xFFFF;
+            int payload = op == OP_ENROLL ? dimension * Float.BYTES : 0;
+            if ((op != OP_ENROLL && op != OP_DELETE) || log.remaining() < idLength + payload + 4) {
+                break;
+            }
+            byte[] id = new byte[idLength];
+            log.get(id);
+            float[] embedding = null;
+            if (op == OP_ENROLL) {
+                embedding = new float[dimension];
+                for (int i = 0; i < dimension; i++) {
+                    embedding[i] = log.getFloat();
+                }
+            }
+            CRC32 crc = new CRC32();
+            crc.update(log.array(), start, log.position() - start);
+            if (log.getInt() != (int) crc.getValue()) {
+                break;
+            }
+            String userId = new String(id, StandardCharsets.UTF_8);
+            if (op == OP_ENROLL) {
+                applyEnroll(userId, embedding);
+            } else {
+                applyDelete(userId);
+            }
+            deltaRecords++;
+            validEnd = log.position();
+        }
+        if (validEnd < log.limit()) {
+            // A torn write from a crash mid-append; drop it so new records follow valid ones
+            System.err.println("Truncating " + (log.limit() - validEnd) + " bytes of incomplete delta log");
+            deltaLog.truncate(validEnd);
+        }
+    }
+
+    private void compactIfNeeded() {
+        try {
+            if (pendingDeltaRecords() >= compactionMinDeltaRecords) {
+                compact();
+            }
+        } catch (Exception e) {
+            System.err.println("Embedding compaction failed: " + e.getMessage());
+        }
+    }
+
+    int pendingDeltaRecords() {
+        lock.readLock().lock();
+        try {
+            return deltaRecords;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Folds the delta log into a new snapshot and empties the log. */
+    public void compact() throws IOException {
+        lock.writeLock().lock();
+        try {
+            Map<String, float[]> merged = new HashMap<>(snapshot.size() + enrolled.size());
+            for (int row = 0; row < snapshot.size(); row++) {
+                String userId = snapshot.userIdAt(row);
+                if (!deleted.contains(userId)) {
+                    merged.put(userId, snapshot.row(row));
+                }
+            }
+            merged.putAll(enrolled);
+
+            Path temp = snapshotPath.resolveSibling(SNAPSHOT_FILE + ".tmp");
+            EmbeddingSnapshot.write(temp, dimension, merged);
+            Files.move(temp, snapshotPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            // Replaying the old log over the new snapshot is harmless, so a crash here loses nothing
+            resetDeltaLog();
+
+            snapshot = EmbeddingSnapshot.open(snapshotPath);
+            enrolled.clear();
+            deleted.clear();
+            deltaRecords = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the whole store with the embeddings in {@code source}, a snapshot built
+     * elsewhere (e.g. by re-enrollment under a new face model). Readers see either the
+     * old or the new embeddings, never a mix. The new model's embeddings may be a
+     * different size; the store takes on the snapshot's dimension.
+     */
+    public void adopt(Path source) throws IOException {
+        EmbeddingSnapshot candidate = EmbeddingSnapshot.open(source);
+        lock.writeLock().lock();
+        try {
+            // Copy next to the live snapshot first; the source may be on another filesystem
+            Path temp = snapshotPath.resolveSibling(SNAPSHOT_FILE + ".tmp");
+            Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+            // Unlike compaction, replaying the old log over the new snapshot would bring
+            // back old-model rows, so empty it before the switch rather than after. It gets
+            // no header until the move is done: a store with an empty log takes its
+            // dimension from whichever snapshot is in place at startup.
+            deltaLog.truncate(0);
+            deltaLog.force(true);
+            try {
+                Files.move(temp, snapshotPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                restoreDeltaLog();
+                throw e;
+            }
+            dimension = candidate.dimension();
+            resetDeltaLog();
+
+            snapshot = EmbeddingSnapshot.open(snapshotPath);
+            enrolled.clear();
+            deleted.clear();
+            deltaRecords = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
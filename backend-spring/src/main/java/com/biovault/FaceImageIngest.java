@@ -0,0 +1,341 @@
+package com.biovault;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks face images before they are sent to face-auth. Anything that isn't a JPEG or
+ * PNG of plausible dimensions is rejected using only the first bytes of the file.
+ * Images larger than the encoder needs are downscaled and re-encoded as JPEG on a
+ * small bounded pool, so face-auth gets less data to decode and scan.
+ */
+@Component
+public class FaceImageIngest {
+
+    private static final byte[] PNG_SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+
+    @Value("${faceauth.ingest.max-bytes:8388608}")
+    private int maxBytes;
+
+    @Value("${faceauth.ingest.min-dimension:64}")
+    private int minDimension;
+
+    @Value("${faceauth.ingest.max-dimension:12000}")
+    private int maxDimension;
+
+    // A small, well-compressed file can still decode to gigabytes; 50 MP is a large phone photo
+    @Value("${faceauth.ingest.max-pixels:50000000}")
+    private long maxPixels;
+
+    // Longest side sent to face-auth; larger images are downscaled to this
+    @Value("${faceauth.ingest.target-dimension:800}")
+    private int targetDimension;
+
+    @Value("${faceauth.ingest.resize-threads:2}")
+    private int resizeThreads;
+
+    @Value("${faceauth.ingest.resize-queue:16}")
+    private int resizeQueue;
+
+    private ThreadPoolExecutor resizePool;
+
+    public FaceImageIngest() {
+    }
+
+    FaceImageIngest(int maxBytes, int minDimension, int maxDimension, long maxPixels, int targetDimension) {
+        this.maxBytes = maxBytes;
+        this.minDimension = minDimension;
+        this.maxDimension = maxDimension;
+        this.maxPixels = maxPixels;
+        this.targetDimension = targetDimension;
+        this.resizeThreads = 1;
+        this.resizeQueue = 4;
+    }
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadCount = new AtomicInteger();
+        resizePool = new ThreadPoolExecutor(resizeThreads, resizeThreads, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(resizeQueue), r -> {
+                Thread t = new Thread(r, "face-ingest-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+    }
+
+    @PreDestroy
+    public void stop() {
+        resizePool.shutdownNow();
+    }
+
+    /**
+     * Validates a Base64 proof and returns the image to send to face-auth, downscaled
+     * if necessary. Fails with {@link InvalidImageException} for unusable input.
+     */
+    public Mono<PreparedImage> prepare(String proof) {
+        PreparedImage image;
+        try {
+            image = inspect(proof);
+        } catch (InvalidImageException e) {
+            return Mono.error(e);
+        }
+        if (Math.max(image.width, image.height) <= targetDimension) {
+            return Mono.just(image);
+        }
+        try {
+            return Mono.fromFuture(CompletableFuture.supplyAsync(() -> downscale(image), resizePool));
+        } catch (RejectedExecutionException e) {
+            // Pool saturated: better to send the original than to queue without bound
+            return Mono.just(image);
+        }
+    }
+
+    /** Header-only checks; never decodes pixel data. */
+    PreparedImage inspect(String proof) {
+        if (proof == null || proof.isEmpty()) {
+            throw new InvalidImageException("No image");
+        }
+        // Base64 is 4 characters per 3 bytes
+        if ((long) proof.length() * 3 / 4 > maxBytes) {
+            throw new InvalidImageException("Image larger than " + maxBytes + " bytes");
+        }
+        // Sniff the signature from the first 12 bytes before decoding the whole image
+        if (proof.length() < 16 || !hasImageSignature(decodePrefix(proof))) {
+            throw new InvalidImageException("Only JPEG and PNG images are accepted");
+        }
+        byte[] bytes;
+        try {
+            bytes = Base64.getDecoder().decode(proof);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidImageException("Image is not valid Base64");
+        }
+
+        int[] size;
+        if (startsWith(bytes, PNG_SIGNATURE)) {
+            size = pngSize(bytes);
+        } else if (isJpeg(bytes)) {
+            size = jpegSize(bytes);
+        } else {
+            throw new InvalidImageException("Only JPEG and PNG images are accepted");
+        }
+        if (size == null) {
+            throw new InvalidImageException("Image header is truncated or corrupt");
+        }
+        int width = size[0];
+        int height = size[1];
+        if (width < minDimension || height < minDimension) {
+            throw new InvalidImageException("Image smaller than " + minDimension + "px");
+        }
+        if (width > maxDimension || height > maxDimension) {
+            throw new InvalidImageException("Image larger than " + maxDimension + "px");
+        }
+        checkPixels(width, height);
+        return new PreparedImage(bytes, proof, width, height);
+    }
+
+    private static byte[] decodePrefix(String proof) {
+        try {
+            return Base64.getDecoder().decode(proof.substring(0, 16));
+        } catch (IllegalArgumentException e) {
+            return new byte[0];
+        }
+    }
+
+    private static boolean hasImageSignature(byte[] bytes) {
+        return startsWith(bytes, PNG_SIGNATURE) || isJpeg(bytes);
+    }
+
+    private static boolean isJpeg(byte[] bytes) {
+        return bytes.length > 3 && (bytes[0] & 0xFF) == 0xFF && (bytes[1] & 0xFF) == 0xD8 && (bytes[2] & 0xFF) == 0xFF;
+    }
+
+    private static int[] pngSize(byte[] bytes) {
+        // The IHDR chunk always comes first: length, "IHDR", width, height
+        if (bytes.length < 24 || bytes[12] != 'I' || bytes[13] != 'H' || bytes[14] != 'D' || bytes[15] != 'R') {
+            return null;
+        }
+        return new int[] { readInt(bytes, 16), readInt(bytes, 20) };
+    }
+
+    private static int[] jpegSize(byte[] bytes) {
+        int i = 2;
+        while (i + 3 < bytes.length) {
+            if ((bytes[i] & 0xFF) != 0xFF) {
+                return null;
+            }
+            int marker = bytes[i + 1] & 0xFF;
+            if (marker == 0xFF) {
+                // Fill byte
+                i++;
+                continue;
+            }
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) {
+                // Markers without a length
+                i += 2;
+                continue;
+            }
+            if (marker == 0xDA || marker == 0xD9) {
+                // Start of scan or end of image before any frame header
+                return null;
+            }
+            int length = readShort(bytes, i + 2);
+            boolean startOfFrame = marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+            if (startOfFrame) {
+                if (i + 9 > bytes.length) {
+                    return null;
+                }
+                return new int[] { readShort(bytes, i + 7), readShort(bytes, i + 5) };
+            }
+            i += 2 + length;
+        }
+        return null;
+    }
+
+    private void checkPixels(long width, long height) {
+        if (width * height > maxPixels) {
+            throw new InvalidImageException("Image has more than " + maxPixels + " pixels");
+        }
+    }
+
+    private PreparedImage downscale(PreparedImage image) {
+        try {
+            BufferedImage source = decodeSubsampled(image.bytes);
+            double scale = (double) targetDimension / Math.max(source.getWidth(), source.getHeight());
+            int width = Math.max(1, (int) Math.round(source.getWidth() * scale));
+            int height = Math.max(1, (int) Math.round(source.getHeight() * scale));
+
+            BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = scaled.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(source, 0, 0, width, height, null);
+            g.dispose();
+
+            byte[] jpeg = encodeJpeg(scaled);
+            return new PreparedImage(jpeg, null, width, height);
+        } catch (IOException e) {
+            throw new InvalidImageException("Image could not be decoded");
+        }
+    }
+
+    /**
+     * Decodes only every n-th row and column, with n chosen so the result is still at
+     * least the target size; memory follows the target, not the source resolution.
+     */
+    private BufferedImage decodeSubsampled(byte[] bytes) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(bytes))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                throw new InvalidImageException("Image could not be decoded");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                // The decoder's own view of the header; ours could be fooled by a crafted file
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                checkPixels(width, height);
+                int step = Math.max(1, Math.max(width, height) / targetDimension);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (MemoryCacheImageOutputStream stream = new MemoryCacheImageOutputStream(out)) {
+            writer.setOutput(stream);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(0.85f);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private static boolean startsWith(byte[] bytes, byte[] prefix) {
+        if (bytes.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int readShort(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFF) << 24) | ((bytes[offset + 1] & 0xFF) << 16)
+            | ((bytes[offset + 2] & 0xFF) << 8) | (bytes[offset + 3] & 0xFF);
+    }
+
+    /** An image ready for face-auth, as raw bytes and (lazily) Base64. */
+    public static class PreparedImage {
+        private final byte[] bytes;
+        private String base64;
+        private final int width;
+        private final int height;
+
+        PreparedImage(byte[] bytes, String base64, int width, int height) {
+            this.bytes = bytes;
+            this.base64 = base64;
+            this.width = width;
+            this.height = height;
+        }
+
+        public byte[] getBytes() { return bytes; }
+        public int getWidth() { return width; }
+        public int getHeight() { return height; }
+
+        public String getBase64() {
+            if (base64 == null) {
+                base64 = Base64.getEncoder().encodeToString(bytes);
+            }
+            return base64;
+        }
+    }
+
+    /** The proof is not an image face-auth could use. */
+    public static class InvalidImageException extends RuntimeException {
+        public InvalidImageException(String message) {
+            super(message);
+        }
+    }
+}
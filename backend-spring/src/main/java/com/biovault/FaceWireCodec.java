@@ -0,0 +1,93 @@
+package com.biovault;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact binary framing for the verify call to face-auth, as an alternative to the
+ * JSON body with a Base64 image. The layout must match face-auth/wire.py; all
+ * numbers are big-endian.
+ *
+ * Request:  u8 version | u8 kind | u16 username length | username | u32 payload length | payload
+ * Response: u8 version | u8 status | f32 distance | f32 confidence | u16 message length | message
+ */
+public final class FaceWireCodec {
+
+    public static final String CONTENT_TYPE = "application/x-biovault-face";
+
+    static final byte VERSION = 1;
+    static final byte KIND_IMAGE = 1;
+    static final byte KIND_EMBEDDING = 2;
+    static final byte STATUS_MATCH = 0;
+    static final byte STATUS_NO_MATCH = 1;
+    static final byte STATUS_ERROR = 2;
+
+    private FaceWireCodec() {
+    }
+
+    public static byte[] encodeImageRequest(String username, byte[] image) {
+        byte[] name = username.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer frame = header(KIND_IMAGE, name, image.length);
+        frame.put(image);
+        return frame.array();
+    }
+
+    public static byte[] encodeEmbeddingRequest(String username, float[] embedding) {
+        byte[] name = username.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer frame = header(KIND_EMBEDDING, name, embedding.length * Float.BYTES);
+        frame.asFloatBuffer().put(embedding);
+        return frame.array();
+    }
+
+    private static ByteBuffer header(byte kind, byte[] name, int payloadLength) {
+        if (name.length > 0xFFFF) {
+            throw new IllegalArgumentException("Username too long");
+        }
+        ByteBuffer frame = ByteBuffer.allocate(2 + 2 + name.length + 4 + payloadLength);
+        frame.put(VERSION).put(kind).putShort((short) name.length).put(name).putInt(payloadLength);
+        return frame;
+    }
+
+    public static FaceVerification decodeResponse(byte[] frame) {
+        ByteBuffer in = ByteBuffer.wrap(frame);
+        byte version = in.get();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported frame version " + version);
+        }
+        byte status = in.get();
+        float distance = in.getFloat();
+        float confidence = in.getFloat();
+        byte[] message = new byte[in.getShort() & 0xFFFF];
+        in.get(message);
+        String text = new String(message, StandardCharsets.UTF_8);
+        if (status == STATUS_ERROR) {
+            throw new IllegalStateException("Face verification failed: " + text);
+        }
+        return new FaceVerification(status == STATUS_MATCH, distance, confidence);
+    }
+
+    /** Outcome of a face-auth verify call, whichever protocol carried it. */
+    public static class FaceVerification {
+        private final boolean match;
+        private final double distance;
+        private final double confidence;
+
+        public FaceVerification(boolean match, double distance, double confidence) {
+            this.match = match;
+            this.distance = distance;
+            this.confidence = confidence;
+        }
+
+        /** For the JSON path, which only reports a distance (and may omit it). */
+        public static FaceVerification fromDistance(boolean match, Number distance) {
+            if (distance == null) {
+                return new FaceVerification(match, Double.NaN, match ? 1.0 : 0.0);
+            }
+            return new FaceVerification(match, distance.doubleValue(), Math.max(0.0, 1.0 - distance.doubleValue()));
+        }
+
+        public boolean isMatch() { return match; }
+        public double getDistance() { return distance; }
+        public double getConfidence() { return confidence; }
+    }
+}
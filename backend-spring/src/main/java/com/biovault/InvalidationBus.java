@@ -0,0 +1,92 @@
+package com.biovault;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.sql.PreparedStatement;
+import java.util.UUID;
+
+/**
+ * Tells the other backend nodes that a user changed, so they drop what they hold about
+ * them locally (cached lookups, unlock tickets).
+ *
+ * Each change is written to the invalidation_outbox table and announced with pg_notify
+ * in a transaction of its own, which callers start once their change has committed; the
+ * outbox lets a node that was disconnected replay what it missed. The receiving side is
+ * {@link InvalidationListener}. Off unless {@code invalidation.enabled=true}: a single
+ * node has nobody to tell, and the outbox table must exist first
+ * ({@code db/invalidation-outbox.sql} where the app doesn't manage the schema).
+ */
+@Component
+@ConditionalOnProperty(name = "invalidation.enabled", havingValue = "true")
+public class InvalidationBus {
+
+    @Autowired
+    private InvalidationEventRepository outbox;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${invalidation.channel:biovault_invalidation}")
+    private String channel;
+
+    @Value("${invalidation.jdbc-url:${spring.datasource.url:}}")
+    private String jdbcUrl;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    /** Records and announces a change in a new transaction, so a failure can't roll back the caller's. */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void publish(String tenantId, String username, String kind) {
+        InvalidationEvent event = outbox.save(new InvalidationEvent(tenantId, username, kind, nodeId));
+        if (!isPostgres()) {
+            // Nothing listens on other databases (e.g. H2 in tests); the outbox row is enough
+            return;
+        }
+        String payload = encode(new Notice(event.getId(), nodeId, kind, tenantId, username, event.getCreatedAt().getTime()));
+        // Through the transaction's own connection, so the notification commits with the outbox row
+        entityManager.unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement notify = connection.prepareStatement("SELECT pg_notify(?, ?)")) {
+                notify.setString(1, channel);
+                notify.setString(2, payload);
+                notify.execute();
+            }
+        });
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    boolean isPostgres() {
+        return jdbcUrl.startsWith("jdbc:postgresql:");
+    }
+
+    private String encode(Notice notice) {
+        try {
+            // pg_notify payloads are capped at 8000 bytes; usernames are far below that
+            return objectMapper.writeValueAsString(notice);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not encode invalidation", e);
+        }
+    }
+
+    /** The notification payload, as JSON. */
+    public record Notice(long id, String origin, String kind, String tenantId, String username, long at) {}
+}
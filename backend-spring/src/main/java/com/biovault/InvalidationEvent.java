@@ -0,0 +1,60 @@
+package com.biovault;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.sql.Timestamp;
+
+// Outbox of user changes that other nodes must drop their local state for. Written in
+// the same transaction as the change; see InvalidationBus and db/invalidation-outbox.sql.
+@Entity
+@Table(name = "invalidation_outbox", indexes = @Index(name = "invalidation_outbox_created_at", columnList = "created_at"))
+public class InvalidationEvent {
+
+    // Cached lookups of the user are stale
+    public static final String USER_UPDATED = "user-updated";
+    // As above, and anything earned with the old credentials (unlock tickets) is void
+    public static final String CREDENTIALS_CHANGED = "credentials-changed";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "tenant_id", nullable = false, length = 64)
+    private String tenantId;
+
+    @Column(nullable = false)
+    private String username;
+
+    @Column(nullable = false, length = 32)
+    private String kind;
+
+    // Node that made the change; it has already invalidated its own state
+    @Column(nullable = false, length = 36)
+    private String origin;
+
+    @Column(name = "created_at", nullable = false)
+    private Timestamp createdAt;
+
+    public InvalidationEvent() {
+    }
+
+    public InvalidationEvent(String tenantId, String username, String kind, String origin) {
+        this.tenantId = tenantId;
+        this.username = username;
+        this.kind = kind;
+        this.origin = origin;
+        this.createdAt = new Timestamp(System.currentTimeMillis());
+    }
+
+    public Long getId() { return id; }
+    public String getTenantId() { return tenantId; }
+    public String getUsername() { return username; }
+    public String getKind() { return kind; }
+    public String getOrigin() { return origin; }
+    public Timestamp getCreatedAt() { return createdAt; }
+}
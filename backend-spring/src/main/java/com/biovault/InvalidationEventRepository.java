@@ -0,0 +1,6 @@
+package com.biovault;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface InvalidationEventRepository extends JpaRepository<InvalidationEvent, Long> {
+}
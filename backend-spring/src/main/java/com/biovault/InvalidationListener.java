@@ -0,0 +1,297 @@
+package com.biovault;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Applies other nodes' {@link InvalidationBus} notifications to this node's local state.
+ *
+ * A daemon thread holds its own connection to the primary (LISTEN doesn't work on a
+ * standby, and a pooled connection would be reclaimed) and blocks in
+ * {@link PGConnection#getNotifications(int)}, so there is no polling interval to wait
+ * out. Notifications arriving within a couple of milliseconds of each other are applied
+ * as one batch with duplicates per user folded together, up to a bounded batch size.
+ * After a reconnect the outbox is replayed from shortly before the connection was lost.
+ */
+@Component
+@Lazy(false)
+@ConditionalOnProperty(name = "invalidation.enabled", havingValue = "true")
+public class InvalidationListener {
+
+    @Autowired
+    private TenantUserCache userCache;
+
+    @Autowired
+    private UnlockTicketService unlockTickets;
+
+    @Autowired
+    private InvalidationBus bus;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${invalidation.jdbc-url:${spring.datasource.url:}}")
+    private String jdbcUrl;
+
+    @Value("${invalidation.username:${spring.datasource.username:}}")
+    private String username;
+
+    @Value("${invalidation.password:${spring.datasource.password:}}")
+    private String password;
+
+    // Extra wait after the first notification, to fold a burst into one batch
+    @Value("${invalidation.coalesce-window-ms:2}")
+    private int coalesceWindowMs;
+
+    @Value("${invalidation.max-batch:1000}")
+    private int maxBatch;
+
+    // Covers clock skew between nodes and transactions that committed late
+    @Value("${invalidation.replay-slack-ms:10000}")
+    private long replaySlackMs;
+
+    // Past this many missed events it is cheaper to drop all local state
+    @Value("${invalidation.replay-limit:10000}")
+    private int replayLimit;
+
+    @Value("${invalidation.outbox-retention-seconds:3600}")
+    private long outboxRetentionSeconds;
+
+    @Value("${invalidation.max-reconnect-backoff-ms:30000}")
+    private long maxReconnectBackoffMs;
+
+    // How long one wait for notifications blocks; also how often the connection is checked
+    private static final int WAIT_MS = 1000;
+    private static final long HOUSEKEEPING_INTERVAL_MS = 60_000;
+
+    private volatile boolean running;
+    private volatile Connection connection;
+    private Thread thread;
+    // Local time the connection was last known to be listening; replay starts before it
+    private volatile long lastHealthyAt;
+    private long lastHousekeepingAt;
+
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong applied = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong reconnects = new AtomicLong();
+    private volatile long lastDelayMs = -1;
+
+    public InvalidationListener() {
+    }
+
+    InvalidationListener(TenantUserCache userCache, UnlockTicketService unlockTickets, InvalidationBus bus,
+                         ObjectMapper objectMapper, int maxBatch) {
+        this.userCache = userCache;
+        this.unlockTickets = unlockTickets;
+        this.bus = bus;
+        this.objectMapper = objectMapper;
+        this.maxBatch = maxBatch;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!bus.isPostgres()) {
+            System.err.println("Cross-node invalidation needs PostgreSQL; not listening on " + jdbcUrl);
+            return;
+        }
+        running = true;
+        // Replay from here if the first connection attempt fails and a later one succeeds
+        lastHealthyAt = System.currentTimeMillis();
+        thread = new Thread(this::run, "invalidation-listener");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+        }
+        Connection conn = connection;
+        if (conn != null) {
+            try {
+                conn.close();
+            } catch (SQLException ignored) {
+                // Shutting down anyway
+            }
+        }
+    }
+
+    private void run() {
+        long backoff = 100;
+        while (running) {
+            try (Connection conn = DriverManager.getConnection(jdbcUrl, username, password)) {
+                connection = conn;
+                try (Statement listen = conn.createStatement()) {
+                    listen.execute("LISTEN \"" + bus.getChannel().replace("\"", "\"\"") + "\"");
+                }
+                // Only after LISTEN, so nothing falls between the replay and the first notification
+                replay(conn, lastHealthyAt - replaySlackMs);
+                backoff = 100;
+                listen(conn);
+            } catch (SQLException e) {
+                if (!running) {
+                    break;
+                }
+                reconnects.incrementAndGet();
+                System.err.println("Invalidation listener lost its connection (" + e.getMessage() + "), retrying in " + backoff + " ms");
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    break;
+                }
+                backoff = Math.min(backoff * 2, maxReconnectBackoffMs);
+            } finally {
+                connection = null;
+            }
+        }
+    }
+
+    private void listen(Connection conn) throws SQLException {
+        PGConnection pg = conn.unwrap(PGConnection.class);
+        while (running) {
+            PGNotification[] first = pg.getNotifications(WAIT_MS);
+            lastHealthyAt = System.currentTimeMillis();
+            if (first != null && first.length > 0) {
+                List<String> payloads = new ArrayList<>();
+                addPayloads(payloads, first);
+                long deadline = System.nanoTime() + coalesceWindowMs * 1_000_000L;
+                long remainingMs;
+                while (payloads.size() < maxBatch && (remainingMs = (deadline - System.nanoTime()) / 1_000_000) > 0) {
+                    PGNotification[] more = pg.getNotifications((int) remainingMs);
+                    if (more == null || more.length == 0) {
+                        break;
+                    }
+                    addPayloads(payloads, more);
+                }
+                handle(payloads);
+            }
+            if (lastHealthyAt - lastHousekeepingAt >= HOUSEKEEPING_INTERVAL_MS) {
+                // Also proves the connection is alive, which waiting on a half-open socket wouldn't
+                pruneOutbox(conn);
+                lastHousekeepingAt = lastHealthyAt;
+            }
+        }
+    }
+
+    private static void addPayloads(List<String> payloads, PGNotification[] notifications) {
+        for (PGNotification notification : notifications) {
+            payloads.add(notification.getParameter());
+        }
+    }
+
+    /** Applies a batch of notification payloads; returns how many users were invalidated. */
+    int handle(List<String> payloads) {
+        Map<UserKey, InvalidationBus.Notice> pending = new LinkedHashMap<>();
+        long now = System.currentTimeMillis();
+        for (String payload : payloads) {
+            InvalidationBus.Notice notice;
+            try {
+                notice = objectMapper.readValue(payload, InvalidationBus.Notice.class);
+            } catch (Exception e) {
+                System.err.println("Ignoring malformed invalidation: " + payload);
+                continue;
+            }
+            received.incrementAndGet();
+            lastDelayMs = now - notice.at();
+            if (bus.getNodeId().equals(notice.origin())) {
+                continue;
+            }
+            coalesce(pending, notice);
+        }
+        apply(pending.values());
+        return pending.size();
+    }
+
+    private static void coalesce(Map<UserKey, InvalidationBus.Notice> pending, InvalidationBus.Notice notice) {
+        UserKey key = new UserKey(notice.tenantId(), notice.username());
+        InvalidationBus.Notice existing = pending.get(key);
+        // A credential change subsumes a plain update
+        if (existing == null || InvalidationEvent.CREDENTIALS_CHANGED.equals(notice.kind())) {
+            pending.put(key, notice);
+        }
+    }
+
+    private void apply(Iterable<InvalidationBus.Notice> notices) {
+        for (InvalidationBus.Notice notice : notices) {
+            userCache.invalidate(notice.tenantId(), notice.username());
+            if (InvalidationEvent.CREDENTIALS_CHANGED.equals(notice.kind())) {
+                unlockTickets.revokeUser(notice.tenantId(), notice.username());
+            }
+            applied.incrementAndGet();
+        }
+    }
+
+    private void replay(Connection conn, long since) throws SQLException {
+        Map<UserKey, InvalidationBus.Notice> pending = new LinkedHashMap<>();
+        int rows = 0;
+        try (PreparedStatement query = conn.prepareStatement(
+                "SELECT id, origin, kind, tenant_id, username, created_at FROM invalidation_outbox"
+                    + " WHERE created_at > ? AND origin <> ? ORDER BY id LIMIT ?")) {
+            query.setTimestamp(1, new Timestamp(since));
+            query.setString(2, bus.getNodeId());
+            query.setInt(3, replayLimit + 1);
+            try (ResultSet rs = query.executeQuery()) {
+                while (rs.next()) {
+                    rows++;
+                    coalesce(pending, new InvalidationBus.Notice(rs.getLong(1), rs.getString(2), rs.getString(3),
+                        rs.getString(4), rs.getString(5), rs.getTimestamp(6).getTime()));
+                }
+            }
+        }
+        if (rows > replayLimit) {
+            System.err.println("Missed more than " + replayLimit + " invalidations while disconnected; dropping all local user state");
+            userCache.clear();
+            unlockTickets.revokeAll();
+        } else {
+            apply(pending.values());
+        }
+        replayed.addAndGet(rows);
+    }
+
+    private void pruneOutbox(Connection conn) throws SQLException {
+        try (PreparedStatement delete = conn.prepareStatement("DELETE FROM invalidation_outbox WHERE created_at < ?")) {
+            delete.setTimestamp(1, new Timestamp(System.currentTimeMillis() - outboxRetentionSeconds * 1000));
+            delete.executeUpdate();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("nodeId", bus.getNodeId());
+        stats.put("listening", connection != null);
+        stats.put("received", received.get());
+        stats.put("applied", applied.get());
+        stats.put("replayed", replayed.get());
+        stats.put("reconnects", reconnects.get());
+        // Commit-to-apply time of the last notification, including clock skew between nodes
+        stats.put("lastDelayMs", lastDelayMs);
+        return stats;
+    }
+
+    // Compared field by field, so no username can pass for another tenant's
+    private record UserKey(String tenantId, String username) {}
+}
@@ -0,0 +1,406 @@
+package com.biovault;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Speaker verification on the local CPU, with no calls to a remote service.
+ *
+ * Audio is read as a stream: WAV samples are framed (25 ms windows, 10 ms hop) and
+ * turned into MFCCs as they arrive, and only running per-coefficient sums are kept,
+ * so memory doesn't grow with clip length. Quiet frames are skipped. The embedding
+ * is the mean and standard deviation of each coefficient over the voiced frames,
+ * L2-normalised so that scoring is a single dot product.
+ *
+ * This is a statistical baseline, not a neural speaker model: calibrate
+ * {@code voice.local.threshold} on recordings from your own microphones before
+ * enabling it with {@code voice.engine=local}.
+ */
+@Component
+@ConditionalOnProperty(name = "voice.engine", havingValue = "local")
+public class LocalVoiceEngine implements VoiceEngine {
+
+    static final int COEFFICIENTS = 13;
+    static final int DIMENSION = 2 * COEFFICIENTS;
+    private static final int MEL_FILTERS = 26;
+    private static final float PRE_EMPHASIS = 0.97f;
+    private static final int LIFTER = 22;
+    // Mono or stereo; the header is client-supplied and sizes the read buffer
+    private static final int MAX_CHANNELS = 2;
+
+    // Filter banks, windows and FFT tables depend only on the sample rate
+    private static final ConcurrentHashMap<Integer, Analysis> ANALYSES = new ConcurrentHashMap<>();
+
+    @Value("${voice.local.threshold:0.9}")
+    private double threshold;
+
+    // Frames quieter than this RMS (full scale = 1.0) are treated as silence
+    @Value("${voice.local.silence-rms:0.005}")
+    private double silenceRms;
+
+    @Value("${voice.local.min-speech-seconds:1.0}")
+    private double minSpeechSeconds;
+
+    @Value("${voice.local.max-seconds:30}")
+    private double maxSeconds;
+
+    public LocalVoiceEngine() {
+    }
+
+    LocalVoiceEngine(double threshold, double silenceRms, double minSpeechSeconds, double maxSeconds) {
+        this.threshold = threshold;
+        this.silenceRms = silenceRms;
+        this.minSpeechSeconds = minSpeechSeconds;
+        this.maxSeconds = maxSeconds;
+    }
+
+    @Override
+    public float[] embed(InputStream wav) throws IOException {
+        DataInputStream in = new DataInputStream(wav);
+        WavFormat format = readHeader(in);
+        Analysis analysis = ANALYSES.computeIfAbsent(format.sampleRate, Analysis::new);
+        Extractor extractor = new Extractor(analysis, (float) silenceRms);
+
+        long maxFrames = (long) (maxSeconds * format.sampleRate);
+        long frames = 0;
+        int frameBytes = format.channels * 2;
+        byte[] chunk = new byte[frameBytes * 1024];
+        long remaining = format.dataBytes;
+        while (remaining > 0) {
+            int read = in.read(chunk, 0, (int) Math.min(chunk.length, remaining));
+            if (read < 0) {
+                // Some recorders never patch the data size; take what is there
+                break;
+            }
+            if (read % frameBytes != 0) {
+                int more = frameBytes - read % frameBytes;
+                in.readFully(chunk, read, more);
+                read += more;
+            }
+            remaining -= read;
+            for (int i = 0; i < read; i += frameBytes) {
+                int sum = 0;
+                for (int c = 0; c < format.channels; c++) {
+                    sum += (short) ((chunk[i + 2 * c] & 0xFF) | (chunk[i + 2 * c + 1] << 8));
+                }
+                extractor.accept(sum / (32768f * format.channels));
+            }
+            frames += read / frameBytes;
+            if (frames > maxFrames) {
+                throw new InvalidAudioException("Recording longer than " + maxSeconds + " s");
+            }
+        }
+
+        if (extractor.voicedFrames * analysis.hop < minSpeechSeconds * format.sampleRate) {
+            throw new InvalidAudioException("Not enough speech in the recording");
+        }
+        return extractor.embedding();
+    }
+
+    @Override
+    public Verification verify(InputStream wav, float[] enrolled) throws IOException {
+        if (enrolled.length != DIMENSION) {
+            throw new IllegalArgumentException("Enrolled embedding has " + enrolled.length + " values, expected " + DIMENSION);
+        }
+        double score = dot(embed(wav), enrolled);
+        return new Verification(score >= threshold, score);
+    }
+
+    /**
+     * Cosine similarity of two L2-normalised vectors. Four independent accumulators
+     * break the floating-point add chain so the loop pipelines; a single running sum
+     * can't be reordered (or vectorised) by the JIT.
+     */
+    static float dot(float[] a, float[] b) {
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (; i + 3 < a.length; i += 4) {
+            s0 += a[i] * b[i];
+            s1 += a[i + 1] * b[i + 1];
+            s2 += a[i + 2] * b[i + 2];
+            s3 += a[i + 3] * b[i + 3];
+        }
+        for (; i < a.length; i++) {
+            s0 += a[i] * b[i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    private static WavFormat readHeader(DataInputStream in) throws IOException {
+        try {
+            if (!"RIFF".equals(fourCc(in))) {
+                throw new InvalidAudioException("Not a WAV file");
+            }
+            readIntLE(in);
+            if (!"WAVE".equals(fourCc(in))) {
+                throw new InvalidAudioException("Not a WAV file");
+            }
+            WavFormat format = null;
+            while (true) {
+                String id = fourCc(in);
+                long size = readIntLE(in) & 0xFFFFFFFFL;
+                if ("fmt ".equals(id)) {
+                    int audioFormat = readShortLE(in);
+                    int channels = readShortLE(in);
+                    int sampleRate = readIntLE(in);
+                    readIntLE(in); // byte rate
+                    readShortLE(in); // block align
+                    int bits = readShortLE(in);
+                    // 0xFFFE is WAVE_FORMAT_EXTENSIBLE, used by some recorders for plain PCM
+                    if ((audioFormat != 1 && audioFormat != 0xFFFE) || bits != 16 || channels < 1) {
+                        throw new InvalidAudioException("Only 16-bit PCM WAV is supported");
+                    }
+                    if (channels > MAX_CHANNELS) {
+                        throw new InvalidAudioException("Only mono or stereo WAV is supported");
+                    }
+                    if (sampleRate < 8000 || sampleRate > 96000) {
+                        throw new InvalidAudioException("Unsupported sample rate " + sampleRate);
+                    }
+                    format = new WavFormat(channels, sampleRate);
+                    skip(in, size - 16 + (size & 1));
+                } else if ("data".equals(id)) {
+                    if (format == null) {
+                        throw new InvalidAudioException("WAV data before format chunk");
+                    }
+                    format.dataBytes = size;
+                    return format;
+                } else {
+                    skip(in, size + (size & 1));
+                }
+            }
+        } catch (EOFException e) {
+            throw new InvalidAudioException("Truncated WAV file");
+        }
+    }
+
+    private static String fourCc(DataInputStream in) throws IOException {
+        byte[] id = new byte[4];
+        in.readFully(id);
+        return new String(id, StandardCharsets.US_ASCII);
+    }
+
+    private static int readShortLE(DataInputStream in) throws IOException {
+        return Short.toUnsignedInt(Short.reverseBytes(in.readShort()));
+    }
+
+    private static int readIntLE(DataInputStream in) throws IOException {
+        return Integer.reverseBytes(in.readInt());
+    }
+
+    private static void skip(DataInputStream in, long bytes) throws IOException {
+        while (bytes > 0) {
+            int skipped = in.skipBytes((int) Math.min(bytes, Integer.MAX_VALUE));
+            if (skipped <= 0) {
+                throw new EOFException();
+            }
+            bytes -= skipped;
+        }
+    }
+
+    private static final class WavFormat {
+        final int channels;
+        final int sampleRate;
+        long dataBytes;
+
+        WavFormat(int channels, int sampleRate) {
+            this.channels = channels;
+            this.sampleRate = sampleRate;
+        }
+    }
+
+    /** Per-sample-rate tables, shared by all extractors at that rate. */
+    private static final class Analysis {
+        final int frameLength;
+        final int hop;
+        final int fftSize;
+        final float[] window;
+        final float[] cos;
+        final float[] sin;
+        final int[] bitReverse;
+        // Triangular mel filters as [filter][first bin .. last bin] weights
+        final int[] filterStart;
+        final float[][] filterWeights;
+        final float[][] dct;
+
+        Analysis(int sampleRate) {
+            frameLength = Math.round(0.025f * sampleRate);
+            hop = Math.round(0.010f * sampleRate);
+            fftSize = Integer.highestOneBit(frameLength - 1) << 1;
+
+            window = new float[frameLength];
+            for (int i = 0; i < frameLength; i++) {
+                window[i] = (float) (0.54 - 0.46 * Math.cos(2 * Math.PI * i / (frameLength - 1)));
+            }
+
+            cos = new float[fftSize / 2];
+            sin = new float[fftSize / 2];
+            for (int i = 0; i < fftSize / 2; i++) {
+                cos[i] = (float) Math.cos(-2 * Math.PI * i / fftSize);
+                sin[i] = (float) Math.sin(-2 * Math.PI * i / fftSize);
+            }
+            int bits = Integer.numberOfTrailingZeros(fftSize);
+            bitReverse = new int[fftSize];
+            for (int i = 0; i < fftSize; i++) {
+                bitReverse[i] = Integer.reverse(i) >>> (32 - bits);
+            }
+
+            double lowMel = mel(20);
+            double highMel = mel(Math.min(8000, sampleRate / 2.0));
+            int[] edges = new int[MEL_FILTERS + 2];
+            for (int m = 0; m < edges.length; m++) {
+                double hz = inverseMel(lowMel + (highMel - lowMel) * m / (MEL_FILTERS + 1));
+                edges[m] = (int) Math.floor((fftSize + 1) * hz / sampleRate);
+            }
+            filterStart = new int[MEL_FILTERS];
+            filterWeights = new float[MEL_FILTERS][];
+            for (int m = 0; m < MEL_FILTERS; m++) {
+                int left = edges[m];
+                int centre = Math.max(edges[m + 1], left + 1);
+                int right = Math.max(edges[m + 2], centre + 1);
+                filterStart[m] = left;
+                filterWeights[m] = new float[right - left + 1];
+                for (int k = left; k <= right; k++) {
+                    filterWeights[m][k - left] = k <= centre
+                        ? (float) (k - left) / (centre - left)
+                        : (float) (right - k) / (right - centre);
+                }
+            }
+
+            // DCT-II rows 1..COEFFICIENTS, c0 (overall loudness) left out, with the usual
+            // sinusoidal lifter folded in so the low coefficients don't dominate the score
+            dct = new float[COEFFICIENTS][MEL_FILTERS];
+            for (int c = 0; c < COEFFICIENTS; c++) {
+                double lifter = 1 + LIFTER / 2.0 * Math.sin(Math.PI * (c + 1) / LIFTER);
+                for (int m = 0; m < MEL_FILTERS; m++) {
+                    dct[c][m] = (float) (lifter * Math.sqrt(2.0 / MEL_FILTERS) * Math.cos(Math.PI * (c + 1) * (m + 0.5) / MEL_FILTERS));
+                }
+            }
+        }
+
+        private static double mel(double hz) {
+            return 2595 * Math.log10(1 + hz / 700);
+        }
+
+        private static double inverseMel(double mel) {
+            return 700 * (Math.pow(10, mel / 2595) - 1);
+        }
+    }
+
+    /** Streaming MFCC state for one recording. */
+    private static final class Extractor {
+        private final Analysis analysis;
+        private final float silenceEnergy;
+        private final float[] frame;
+        private final float[] re;
+        private final float[] im;
+        private final float[] melEnergies = new float[MEL_FILTERS];
+        private final double[] sum = new double[COEFFICIENTS];
+        private final double[] sumSquares = new double[COEFFICIENTS];
+        private int filled;
+        private float previous;
+        long voicedFrames;
+
+        Extractor(Analysis analysis, float silenceRms) {
+            this.analysis = analysis;
+            this.silenceEnergy = silenceRms * silenceRms * analysis.frameLength;
+            this.frame = new float[analysis.frameLength];
+            this.re = new float[analysis.fftSize];
+            this.im = new float[analysis.fftSize];
+        }
+
+        void accept(float sample) {
+            frame[filled++] = sample;
+            if (filled == frame.length) {
+                process();
+                // Keep the overlap for the next frame
+                System.arraycopy(frame, analysis.hop, frame, 0, frame.length - analysis.hop);
+                filled = frame.length - analysis.hop;
+            }
+        }
+
+        private void process() {
+            float energy = 0;
+            for (float s : frame) {
+                energy += s * s;
+            }
+            // The pre-emphasis filter carries across frames through the hop's first sample
+            float carry = previous;
+            previous = frame[analysis.hop - 1];
+            if (energy < silenceEnergy) {
+                return;
+            }
+
+            float[] window = analysis.window;
+            Arrays.fill(re, 0f);
+            Arrays.fill(im, 0f);
+            for (int i = 0; i < frame.length; i++) {
+                float emphasised = frame[i] - PRE_EMPHASIS * (i == 0 ? carry : frame[i - 1]);
+                re[analysis.bitReverse[i]] = emphasised * window[i];
+            }
+            fft();
+
+            for (int m = 0; m < MEL_FILTERS; m++) {
+                float[] weights = analysis.filterWeights[m];
+                int start = analysis.filterStart[m];
+                float e = 0;
+                for (int k = 0; k < weights.length; k++) {
+                    int bin = start + k;
+                    e += weights[k] * (re[bin] * re[bin] + im[bin] * im[bin]);
+                }
+                melEnergies[m] = (float) Math.log(Math.max(e, 1e-10f));
+            }
+            for (int c = 0; c < COEFFICIENTS; c++) {
+                float coefficient = dot(analysis.dct[c], melEnergies);
+                sum[c] += coefficient;
+                sumSquares[c] += coefficient * coefficient;
+            }
+            voicedFrames++;
+        }
+
+        /** In-place radix-2 FFT; the input was written in bit-reversed order. */
+        private void fft() {
+            int n = re.length;
+            for (int size = 2; size <= n; size <<= 1) {
+                int half = size >> 1;
+                int step = n / size;
+                for (int start = 0; start < n; start += size) {
+                    for (int k = 0; k < half; k++) {
+                        float wr = analysis.cos[k * step];
+                        float wi = analysis.sin[k * step];
+                        int a = start + k;
+                        int b = a + half;
+                        float tr = re[b] * wr - im[b] * wi;
+                        float ti = re[b] * wi + im[b] * wr;
+                        re[b] = re[a] - tr;
+                        im[b] = im[a] - ti;
+                        re[a] += tr;
+                        im[a] += ti;
+                    }
+                }
+            }
+        }
+
+        float[] embedding() {
+            float[] embedding = new float[DIMENSION];
+            for (int c = 0; c < COEFFICIENTS; c++) {
+                double mean = sum[c] / voicedFrames;
+                embedding[c] = (float) mean;
+                embedding[COEFFICIENTS + c] = (float) Math.sqrt(Math.max(0, sumSquares[c] / voicedFrames - mean * mean));
+            }
+            float norm = (float) Math.sqrt(dot(embedding, embedding));
+            for (int i = 0; i < embedding.length; i++) {
+                embedding[i] /= norm;
+            }
+            return embedding;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.biovault;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+/**
+ * Failure responses whose bodies never change, serialised once at startup with the
+ * application's ObjectMapper. The rejection paths hand out these shared entities
+ * instead of allocating and serialising a new DTO for every failed attempt.
+ */
+@Component
+public class PreEncodedResponses {
+
+    private final ResponseEntity<?> unlockUnauthorized;
+    private final ResponseEntity<?> unlockServerError;
+    private final ResponseEntity<?> loginUnauthorized;
+    private final ResponseEntity<?> loginBadRequest;
+    private final ResponseEntity<?> loginTooManyRequests;
+
+    public PreEncodedResponses(ObjectMapper objectMapper) throws JsonProcessingException {
+        byte[] unlockRejected = objectMapper.writeValueAsBytes(new UserController.UnlockResponse(false, 0.0, null));
+        byte[] loginRejected = objectMapper.writeValueAsBytes(new UserController.LoginResponse(false, null, null, null));
+        this.unlockUnauthorized = json(HttpStatus.UNAUTHORIZED, unlockRejected);
+        this.unlockServerError = json(HttpStatus.INTERNAL_SERVER_ERROR, unlockRejected);
+        this.loginUnauthorized = json(HttpStatus.UNAUTHORIZED, loginRejected);
+        this.loginBadRequest = json(HttpStatus.BAD_REQUEST, loginRejected);
+        this.loginTooManyRequests = json(HttpStatus.TOO_MANY_REQUESTS, loginRejected);
+    }
+
+    private static ResponseEntity<?> json(HttpStatus status, byte[] body) {
+        // byte[] bodies are written as-is by ByteArrayHttpMessageConverter
+        return ResponseEntity.status(status).contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    public ResponseEntity<?> unlockUnauthorized() { return unlockUnauthorized; }
+    public ResponseEntity<?> unlockServerError() { return unlockServerError; }
+    public ResponseEntity<?> loginUnauthorized() { return loginUnauthorized; }
+    public ResponseEntity<?> loginBadRequest() { return loginBadRequest; }
+    public ResponseEntity<?> loginTooManyRequests() { return loginTooManyRequests; }
+}
@@ -0,0 +1,544 @@
+package com.biovault;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Re-embeds every stored enrollment image (face-auth's data/known_faces) after a face
+ * encoder upgrade, so users don't have to enroll again.
+ *
+ * Images are streamed from the directory through at most {@code reenroll.parallelism}
+ * concurrent calls to face-auth's /embed, which stores the new embeddings as a shadow
+ * version beside the active one. Each finished user is appended to a checkpoint file, so
+ * starting the same version again after a crash or cancel only does what is left. Once
+ * every image is embedded, face-auth and the local EmbeddingStore (if enabled) are each
+ * switched to the new version in one step. Face enrollment on this node is paused for
+ * the switch, and a last pass picks up anyone who enrolled just before the pause.
+ */
+@Component
+public class ReenrollmentJob {
+
+    public enum State { RUNNING, CANCELLED, FAILED, INCOMPLETE, SWITCHED }
+
+    private static final MediaType FACE_WIRE_TYPE = MediaType.parseMediaType(FaceWireCodec.CONTENT_TYPE);
+    private static final Pattern VERSION_NAME = Pattern.compile("[A-Za-z0-9_.-]{1,32}");
+    private static final String IMAGE_SUFFIX = ".jpg";
+
+    @Value("${reenroll.images-dir:face-auth/data/known_faces}")
+    private String imagesDir;
+
+    @Value("${reenroll.work-dir:data/reenrollment}")
+    private String workDir;
+
+    @Value("${reenroll.parallelism:4}")
+    private int parallelism;
+
+    @Value("${reenroll.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${reenroll.request-timeout-ms:30000}")
+    private long requestTimeoutMs;
+
+    @Value("${reenroll.retry-backoff-ms:500}")
+    private long retryBackoffMs;
+
+    // Embedding size of the new version; 0 takes it from face-auth's first response
+    @Value("${reenroll.dimension:0}")
+    private int dimension;
+
+    // Only present when embeddings.store.enabled=true
+    @Autowired(required = false)
+    private EmbeddingStore embeddingStore;
+
+    private final WebClient webClient;
+    private Run current;
+
+    // Face enrollments in flight on this node; a switch waits for them and holds new ones back
+    private final Object enrollmentGate = new Object();
+    private int enrollmentsInFlight;
+    private boolean enrollmentPaused;
+
+    @Autowired
+    public ReenrollmentJob(WebClient.Builder webClientBuilder) {
+        this.webClient = webClientBuilder.baseUrl("http://localhost:5001").build();
+    }
+
+    ReenrollmentJob(WebClient webClient, String imagesDir, String workDir, int parallelism, EmbeddingStore embeddingStore) {
+        this.webClient = webClient;
+        this.imagesDir = imagesDir;
+        this.workDir = workDir;
+        this.parallelism = parallelism;
+        this.embeddingStore = embeddingStore;
+        this.maxAttempts = 3;
+        this.requestTimeoutMs = 5000;
+        this.retryBackoffMs = 10;
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (current != null && current.state == State.RUNNING) {
+            // The checkpoint lets the next start pick up from here
+            current.subscription.dispose();
+            current.finish(State.CANCELLED);
+        }
+        if (current != null && current.shadow != null) {
+            closeQuietly(current.shadow::close);
+        }
+    }
+
+    /**
+     * Starts re-embedding into {@code version}, resuming from its checkpoint if an
+     * earlier run of the same version was interrupted.
+     */
+    public synchronized Map<String, Object> start(String version) throws IOException {
+        if (version == null || !VERSION_NAME.matcher(version).matches()) {
+            throw new IllegalArgumentException("Version must be 1-32 letters, digits, '.', '_' or '-'");
+        }
+        if (current != null && current.state == State.RUNNING) {
+            throw new IllegalStateException("Re-enrollment into " + current.version + " is already running");
+        }
+        Path images = Paths.get(imagesDir);
+        if (!Files.isDirectory(images)) {
+            throw new IllegalArgumentException("No enrollment images at " + images.toAbsolutePath());
+        }
+        Path work = Paths.get(workDir);
+        Files.createDirectories(work);
+
+        if (current != null && current.shadow != null) {
+            closeQuietly(current.shadow::close);
+        }
+        Run run = new Run(version, work, countImages(images));
+        if (embeddingStore != null) {
+            run.shadowDir = work.resolve(version);
+            // A resumed run keeps the size it started with; otherwise the first embedding decides
+            int shadowDimension = dimension > 0 ? dimension : EmbeddingStore.storedDimension(run.shadowDir);
+            if (shadowDimension > 0) {
+                run.openShadow(shadowDimension);
+            }
+        }
+        current = run;
+        System.out.printf("Re-enrolling %d images into %s (%d already checkpointed)%n",
+            run.total.get(), version, run.checkpoint.size());
+
+        run.subscription = embedAll(run, images, path -> {
+                if (run.checkpoint.containsKey(username(path))) {
+                    run.skipped.incrementAndGet();
+                    return false;
+                }
+                return true;
+            })
+            // Users who enrolled again while the job ran have a newer image than the one embedded
+            .then(Mono.defer(() -> catchUp(run, images)))
+            .then(Mono.defer(() -> run.failed.get() == 0 ? switchOver(run, images, false) : Mono.fromRunnable(() -> run.finish(State.INCOMPLETE))))
+            .subscribe(null, e -> fail(run, e));
+        return run.status();
+    }
+
+    private static void fail(Run run, Throwable e) {
+        run.lastError = e.getMessage();
+        run.finish(State.FAILED);
+        System.err.println("Re-enrollment into " + run.version + " failed: " + e.getMessage());
+    }
+
+    public synchronized Map<String, Object> cancel() {
+        if (current == null || current.state != State.RUNNING) {
+            throw new IllegalStateException("No re-enrollment is running");
+        }
+        current.subscription.dispose();
+        current.finish(State.CANCELLED);
+        return current.status();
+    }
+
+    /**
+     * Switches to the new version although some images could not be embedded (e.g. the
+     * new model finds no face in them); those users will have to enroll again. Runs in
+     * the background like {@link #start}; poll {@link #status} for the outcome.
+     */
+    public synchronized Map<String, Object> forceSwitch() throws IOException {
+        if (current == null || (current.state != State.INCOMPLETE && current.state != State.FAILED)) {
+            throw new IllegalStateException("Only a finished, unswitched re-enrollment can be switched");
+        }
+        if (current.checkpoint.isEmpty()) {
+            // Switching now would leave every user without a face embedding
+            throw new IllegalStateException("No images were re-embedded into " + current.version);
+        }
+        Run run = current;
+        run.resume();
+        run.subscription = switchOver(run, Paths.get(imagesDir), true).subscribe(null, e -> fail(run, e));
+        return run.status();
+    }
+
+    /** Called before a face enrollment; false while a switch is in progress. */
+    public boolean beginEnrollment() {
+        synchronized (enrollmentGate) {
+            if (enrollmentPaused) {
+                return false;
+            }
+            enrollmentsInFlight++;
+            return true;
+        }
+    }
+
+    public void endEnrollment() {
+        synchronized (enrollmentGate) {
+            enrollmentsInFlight--;
+            enrollmentGate.notifyAll();
+        }
+    }
+
+    private void pauseEnrollment() {
+        synchronized (enrollmentGate) {
+            enrollmentPaused = true;
+            long deadline = System.currentTimeMillis() + requestTimeoutMs;
+            try {
+                while (enrollmentsInFlight > 0) {
+                    long wait = deadline - System.currentTimeMillis();
+                    if (wait <= 0) {
+                        throw new IllegalStateException(enrollmentsInFlight + " face enrollments still running; try the switch again");
+                    }
+                    enrollmentGate.wait(wait);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for face enrollments", e);
+            }
+        }
+    }
+
+    private void resumeEnrollment() {
+        synchronized (enrollmentGate) {
+            enrollmentPaused = false;
+        }
+    }
+
+    public synchronized Map<String, Object> status() {
+        return current == null ? Map.of("state", "IDLE") : current.status();
+    }
+
+    /** Embeds images written since their user was checkpointed, and any not seen yet. */
+    private Mono<Void> catchUp(Run run, Path images) {
+        return embedAll(run, images, path -> {
+            String username = username(path);
+            Long embeddedAt = run.checkpoint.get(username);
+            boolean changed = !run.failedUsers.contains(username) && (embeddedAt == null || lastModified(path) > embeddedAt);
+            if (changed) {
+                run.total.incrementAndGet();
+            }
+            return changed;
+        });
+    }
+
+    private Mono<Void> embedAll(Run run, Path images, Predicate<Path> include) {
+        // Files.list reads the directory lazily, so even huge ones aren't held in memory
+        return Flux.using(() -> Files.list(images), Flux::fromStream, Stream::close)
+            .subscribeOn(Schedulers.boundedElastic())
+            .filter(ReenrollmentJob::isImage)
+            .filter(include)
+            // Prefetch of one keeps at most `parallelism` images in memory
+            .flatMap(path -> embedOne(run, path), parallelism, 1)
+            .then();
+    }
+
+    private Mono<Void> embedOne(Run run, Path image) {
+        String username = username(image);
+        // Taken before reading so a re-enrollment during the call counts as newer
+        long startedAt = System.currentTimeMillis();
+        return Mono.fromCallable(() -> Files.readAllBytes(image))
+            .subscribeOn(Schedulers.boundedElastic())
+            .flatMap(bytes -> embed(run.version, username, bytes))
+            .publishOn(Schedulers.boundedElastic())
+            .doOnNext(embedding -> run.record(username, embedding, startedAt))
+            .then()
+            .onErrorResume(e -> {
+                run.recordFailure(username, e);
+                return Mono.empty();
+            });
+    }
+
+    private Mono<float[]> embed(String version, String username, byte[] image) {
+        return webClient.post()
+            .uri(uri -> uri.path("/embed").queryParam("version", version).build())
+            .contentType(FACE_WIRE_TYPE)
+            .bodyValue(FaceWireCodec.encodeImageRequest(username, image))
+            .retrieve()
+            .onStatus(HttpStatus::is4xxClientError, response -> response.bodyToMono(Map.class)
+                .defaultIfEmpty(Map.of())
+                .map(body -> new RejectedImageException(String.valueOf(body.get("message")))))
+            .bodyToMono(Map.class)
+            .map(ReenrollmentJob::toVector)
+            .timeout(Duration.ofMillis(requestTimeoutMs))
+            .retryWhen(Retry.backoff(maxAttempts - 1, Duration.ofMillis(retryBackoffMs))
+                .filter(e -> !(e instanceof RejectedImageException))
+                .onRetryExhaustedThrow((spec, signal) -> signal.failure()));
+    }
+
+    /**
+     * Pauses face enrollment, embeds whoever enrolled since the last pass, then activates
+     * the new version. Without the pause, an enrollment landing between the last pass and
+     * the activation would only reach the old version and be lost.
+     */
+    private Mono<Void> switchOver(Run run, Path images, boolean force) {
+        return Mono.fromRunnable(this::pauseEnrollment)
+            .subscribeOn(Schedulers.boundedElastic())
+            .then(Mono.defer(() -> catchUp(run, images)))
+            .then(Mono.defer(() -> {
+                if (run.checkpoint.isEmpty()) {
+                    return Mono.error(new IllegalStateException("No images were re-embedded into " + run.version));
+                }
+                if (run.shadowDir != null && run.shadow == null) {
+                    // Checkpointed by a run whose shadow store is gone; the local store can't follow
+                    return Mono.error(new IllegalStateException("No local shadow store for " + run.version + "; re-enroll into a new version"));
+                }
+                if (run.failed.get() > 0 && !force) {
+                    return Mono.fromRunnable(() -> run.finish(State.INCOMPLETE));
+                }
+                return activate(run);
+            }))
+            .doFinally(signal -> resumeEnrollment());
+    }
+
+    private Mono<Void> activate(Run run) {
+        return webClient.post()
+            .uri("/embeddings/activate")
+            .bodyValue(Map.of("version", run.version))
+            .retrieve()
+            .bodyToMono(Map.class)
+            .timeout(Duration.ofMillis(requestTimeoutMs))
+            .publishOn(Schedulers.boundedElastic())
+            .doOnNext(response -> {
+                try {
+                    if (run.shadow != null) {
+                        run.shadow.compact();
+                        embeddingStore.adopt(run.shadow.snapshotFile());
+                        run.shadow.close();
+                        run.shadow = null;
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException("face-auth switched but the local store didn't: " + e.getMessage(), e);
+                }
+                run.finish(State.SWITCHED);
+                System.out.printf("Switched face embeddings to %s (%d users)%n", run.version, response.get("users"));
+            })
+            .then();
+    }
+
+    private static float[] toVector(Map<?, ?> body) {
+        Object embedding = body.get("embedding");
+        if (!(embedding instanceof List)) {
+            throw new IllegalStateException("face-auth returned no embedding");
+        }
+        List<?> values = (List<?>) embedding;
+        float[] vector = new float[values.size()];
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = ((Number) values.get(i)).floatValue();
+        }
+        return vector;
+    }
+
+    private static long countImages(Path images) throws IOException {
+        try (Stream<Path> files = Files.list(images)) {
+            return files.filter(ReenrollmentJob::isImage).count();
+        }
+    }
+
+    private static boolean isImage(Path path) {
+        return path.getFileName().toString().endsWith(IMAGE_SUFFIX);
+    }
+
+    private static String username(Path image) {
+        String name = image.getFileName().toString();
+        return name.substring(0, name.length() - IMAGE_SUFFIX.length());
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            System.err.println("Error closing " + closeable + ": " + e.getMessage());
+        }
+    }
+
+    /** One job's progress and its checkpoint. */
+    private static final class Run {
+        final String version;
+        final long startNanos = System.nanoTime();
+        final AtomicLong total;
+        final AtomicLong completed = new AtomicLong();
+        final AtomicLong skipped = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        // Username -> when their image was read, from this run and earlier ones
+        final Map<String, Long> checkpoint = new ConcurrentHashMap<>();
+        final Set<String> failedUsers = ConcurrentHashMap.newKeySet();
+        final Path checkpointFile;
+        final Path failureFile;
+        BufferedWriter checkpointLog;
+        BufferedWriter failureLog;
+        volatile State state = State.RUNNING;
+        volatile String lastError;
+        volatile long finishedNanos;
+        Disposable subscription;
+        volatile EmbeddingStore shadow;
+        // Where the shadow store lives; null when there is no local store to switch
+        Path shadowDir;
+        private boolean closed;
+
+        Run(String version, Path work, long total) throws IOException {
+            this.version = version;
+            this.total = new AtomicLong(total);
+            this.checkpointFile = work.resolve(version + ".checkpoint");
+            if (Files.exists(checkpointFile)) {
+                try (Stream<String> lines = Files.lines(checkpointFile, StandardCharsets.UTF_8)) {
+                    lines.forEach(this::loadCheckpointLine);
+                }
+            }
+            this.failureFile = work.resolve(version + ".failed");
+            checkpointLog = Files.newBufferedWriter(checkpointFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            failureLog = Files.newBufferedWriter(failureFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        synchronized void openShadow(int dimension) throws IOException {
+            EmbeddingStore store = new EmbeddingStore(shadowDir.toString(), dimension);
+            store.open();
+            shadow = store;
+        }
+
+        /** Reopens a finished run's logs so a forced switch can record its last pass. */
+        synchronized void resume() throws IOException {
+            checkpointLog = Files.newBufferedWriter(checkpointFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            failureLog = Files.newBufferedWriter(failureFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            closed = false;
+            finishedNanos = 0;
+            state = State.RUNNING;
+        }
+
+        private void loadCheckpointLine(String line) {
+            int tab = line.indexOf('\t');
+            if (tab <= 0) {
+                return;
+            }
+            try {
+                checkpoint.put(line.substring(tab + 1), Long.parseLong(line.substring(0, tab)));
+            } catch (NumberFormatException e) {
+                // A line torn by a crash; that user is simply embedded again
+            }
+        }
+
+        synchronized void record(String username, float[] embedding, long startedAt) {
+            if (closed) {
+                return;
+            }
+            try {
+                if (shadowDir != null) {
+                    if (shadow == null) {
+                        openShadow(embedding.length);
+                    }
+                    // Throws if face-auth's embedding size changed mid-run
+                    shadow.enroll(username, embedding);
+                }
+                // Flushed per user so a crash loses at most the calls in flight
+                checkpointLog.write(startedAt + "\t" + username + "\n");
+                checkpointLog.flush();
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not checkpoint " + username + ": " + e.getMessage(), e);
+            }
+            checkpoint.put(username, startedAt);
+            completed.incrementAndGet();
+        }
+
+        synchronized void recordFailure(String username, Throwable e) {
+            if (closed) {
+                return;
+            }
+            failed.incrementAndGet();
+            failedUsers.add(username);
+            lastError = username + ": " + e.getMessage();
+            try {
+                failureLog.write(username + "\t" + e.getMessage() + "\n");
+                failureLog.flush();
+            } catch (IOException ignored) {
+                // The failure still shows in the counters and lastError
+            }
+        }
+
+        synchronized void finish(State finalState) {
+            state = finalState;
+            if (closed) {
+                return;
+            }
+            closed = true;
+            finishedNanos = System.nanoTime();
+            closeQuietly(checkpointLog);
+            closeQuietly(failureLog);
+            // The shadow store stays open until switched or replaced by another run
+        }
+
+        Map<String, Object> status() {
+            double elapsedSeconds = ((finishedNanos != 0 ? finishedNanos : System.nanoTime()) - startNanos) / 1e9;
+            long done = completed.get();
+            long remaining = Math.max(0, total.get() - done - skipped.get() - failed.get());
+            double perSecond = elapsedSeconds > 0 ? done / elapsedSeconds : 0;
+
+            Map<String, Object> status = new LinkedHashMap<>();
+            status.put("version", version);
+            status.put("state", state);
+            status.put("total", total.get());
+            status.put("completed", done);
+            status.put("skipped", skipped.get());
+            status.put("failed", failed.get());
+            status.put("remaining", remaining);
+            status.put("imagesPerSecond", Math.round(perSecond * 10) / 10.0);
+            status.put("elapsedSeconds", Math.round(elapsedSeconds));
+            status.put("etaSeconds", state == State.RUNNING && perSecond > 0 ? Math.round(remaining / perSecond) : null);
+            status.put("lastError", lastError);
+            status.put("checkpoint", checkpointFile.toAbsolutePath().toString());
+            return status;
+        }
+    }
+
+    /** face-auth refused the image (unreadable, no face); retrying won't help. */
+    static class RejectedImageException extends RuntimeException {
+        RejectedImageException(String message) {
+            super(message);
+        }
+    }
+}
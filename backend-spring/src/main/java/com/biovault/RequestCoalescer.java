@@ -0,0 +1,121 @@
+package com.biovault;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight layer for downstream calls. Concurrent requests that share a key
+ * are collapsed onto one call and every caller receives the same result. The key
+ * is released as soon as the call finishes, so later requests go downstream again.
+ */
+@Component
+public class RequestCoalescer {
+
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    // Longest a blocking follower waits for the leader's result before giving up
+    @Value("${coalescer.follower-timeout-ms:30000}")
+    private long followerTimeoutMs = 30_000;
+
+    /**
+     * Builds a coalescing key from the endpoint, the user and a SHA-256 of the proof,
+     * so that large proofs (Base64 images) are never held as map keys.
+     */
+    public static String key(String endpoint, String user, String proof) {
+        return endpoint + ":" + user + ":" + (proof == null ? "" : sha256(proof));
+    }
+
+    /**
+     * Subscribes to the Mono returned by {@code call} only if no identical request is
+     * already in flight; otherwise the caller waits for the in-flight result.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Mono<T> coalesce(String key, Supplier<Mono<T>> call) {
+        return Mono.defer(() -> {
+            CompletableFuture<Object> placeholder = new CompletableFuture<>();
+            CompletableFuture<Object> leader = inFlight.putIfAbsent(key, placeholder);
+            if (leader == null) {
+                leader = placeholder;
+                try {
+                    // Subscribed independently of the caller, so a cancelled leader
+                    // never leaves the followers waiting on a result that won't arrive.
+                    call.get().toFuture().whenComplete((value, error) -> release(key, placeholder, value, error));
+                } catch (RuntimeException e) {
+                    release(key, placeholder, null, e);
+                }
+            }
+            // A dependent stage, so one caller cancelling doesn't cancel the shared call.
+            return Mono.fromFuture(leader.thenApply(value -> (T) value));
+        });
+    }
+
+    /**
+     * Blocking counterpart of {@link #coalesce(String, Supplier)} for calls such as the
+     * OTP script that run on the request thread.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T coalesceBlocking(String key, Callable<T> call) throws Exception {
+        CompletableFuture<Object> placeholder = new CompletableFuture<>();
+        CompletableFuture<Object> leader = inFlight.putIfAbsent(key, placeholder);
+        if (leader == null) {
+            try {
+                T value = call.call();
+                release(key, placeholder, value, null);
+                return value;
+            } catch (Throwable e) {
+                // Errors too: a key left in flight would block every later caller
+                release(key, placeholder, null, e);
+                throw e;
+            }
+        }
+        try {
+            return (T) leader.get(followerTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+
+    private void release(String key, CompletableFuture<Object> placeholder, Object value, Throwable error) {
+        // Remove before completing so a request arriving afterwards starts a fresh call.
+        inFlight.remove(key, placeholder);
+        if (error != null) {
+            placeholder.completeExceptionally(error);
+        } else {
+            placeholder.complete(value);
+        }
+    }
+
+    private static String sha256(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
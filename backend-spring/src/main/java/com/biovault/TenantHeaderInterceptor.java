@@ -0,0 +1,52 @@
+package com.biovault;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Rejects requests whose {@value Tenants#HEADER} header isn't a well-formed tenant ID, or
+ * isn't one of {@code tenant.allowed-ids} when that is set, before any per-tenant cache
+ * or quota is created for it.
+ */
+@Component
+public class TenantHeaderInterceptor implements HandlerInterceptor {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final Set<String> allowedIds;
+
+    public TenantHeaderInterceptor(@Value("${tenant.allowed-ids:}") String[] allowedIds) {
+        this.allowedIds = Arrays.stream(allowedIds).map(String::trim).filter(id -> !id.isEmpty()).collect(Collectors.toSet());
+    }
+
+    public boolean isAllowed(String tenantId) {
+        return Tenants.isValidId(tenantId)
+            && (allowedIds.isEmpty() || Tenants.DEFAULT_TENANT.equals(tenantId) || allowedIds.contains(tenantId));
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        String tenantId = request.getHeader(Tenants.HEADER);
+        if (tenantId == null || isAllowed(tenantId)) {
+            return true;
+        }
+        response.setStatus(HttpStatus.BAD_REQUEST.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(),
+            Map.of("success", false, "message", new Tenants.InvalidTenantException(tenantId).getMessage()));
+        return false;
+    }
+}
@@ -0,0 +1,87 @@
+package com.biovault;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Caps how many database calls a single tenant can have in flight, so that one
+ * tenant's login storm can't take every pooled connection from the others. Off
+ * when {@code tenant.db.max-concurrent-calls} is 0. A tenant's entry only lives
+ * while it has calls waiting or running, so arbitrary tenant IDs can't pile up.
+ */
+@Component
+public class TenantQuotas {
+
+    private final ConcurrentHashMap<String, Quota> quotas = new ConcurrentHashMap<>();
+
+    @Value("${tenant.db.max-concurrent-calls:0}")
+    private int maxConcurrentCalls;
+
+    @Value("${tenant.db.acquire-timeout-ms:200}")
+    private long acquireTimeoutMs;
+
+    public TenantQuotas() {
+    }
+
+    TenantQuotas(int maxConcurrentCalls, long acquireTimeoutMs) {
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+    }
+
+    public <T> T call(String tenantId, Supplier<T> dbCall) {
+        Tenants.requireValidId(tenantId);
+        if (maxConcurrentCalls <= 0) {
+            return dbCall.get();
+        }
+        Quota quota = quotas.compute(tenantId, (t, q) -> {
+            Quota held = q != null ? q : new Quota(maxConcurrentCalls);
+            held.users++;
+            return held;
+        });
+        try {
+            boolean acquired;
+            try {
+                acquired = quota.permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new TenantBusyException(tenantId);
+            }
+            if (!acquired) {
+                throw new TenantBusyException(tenantId);
+            }
+            try {
+                return dbCall.get();
+            } finally {
+                quota.permits.release();
+            }
+        } finally {
+            quotas.computeIfPresent(tenantId, (t, q) -> --q.users == 0 ? null : q);
+        }
+    }
+
+    int trackedTenants() {
+        return quotas.size();
+    }
+
+    // users counts callers waiting or running; only changed inside compute, which locks the key
+    private static class Quota {
+        private final Semaphore permits;
+        private int users;
+
+        Quota(int maxConcurrentCalls) {
+            this.permits = new Semaphore(maxConcurrentCalls);
+        }
+    }
+
+    /** Thrown when a tenant has used up its share of database connections. */
+    public static class TenantBusyException extends RuntimeException {
+        public TenantBusyException(String tenantId) {
+            super("Too many concurrent requests for tenant '" + tenantId + "'");
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.biovault;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Username lookups cached per tenant. Each tenant gets its own bounded LRU, so a
+ * large tenant can only evict its own entries, never another tenant's. At most
+ * {@code tenant.cache.max-tenants} tenants are cached at once; once that many are,
+ * tenants whose entries have all expired make room, and otherwise new tenants
+ * simply go uncached.
+ */
+@Component
+public class TenantUserCache {
+
+    private final ConcurrentHashMap<String, Map<String, Entry>> tenants = new ConcurrentHashMap<>();
+
+    @Value("${tenant.cache.max-entries-per-tenant:1000}")
+    private int maxEntriesPerTenant;
+
+    @Value("${tenant.cache.ttl-seconds:30}")
+    private long ttlSeconds;
+
+    @Value("${tenant.cache.max-tenants:1000}")
+    private int maxTenants;
+
+    public TenantUserCache() {
+    }
+
+    TenantUserCache(int maxEntriesPerTenant, long ttlSeconds) {
+        this(maxEntriesPerTenant, ttlSeconds, 1000);
+    }
+
+    TenantUserCache(int maxEntriesPerTenant, long ttlSeconds, int maxTenants) {
+        this.maxEntriesPerTenant = maxEntriesPerTenant;
+        this.ttlSeconds = ttlSeconds;
+        this.maxTenants = maxTenants;
+    }
+
+    public User get(String tenantId, String username) {
+        Map<String, Entry> cache = tenants.get(tenantId);
+        if (cache == null) {
+            return null;
+        }
+        synchronized (cache) {
+            Entry entry = cache.get(username);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAt < System.currentTimeMillis()) {
+                cache.remove(username);
+                return null;
+            }
+            return entry.user;
+        }
+    }
+
+    public void put(String tenantId, User user) {
+        Tenants.requireValidId(tenantId);
+        if (!tenants.containsKey(tenantId) && tenants.size() >= maxTenants && !evictExpiredTenants()) {
+            return;
+        }
+        Map<String, Entry> cache = tenants.computeIfAbsent(tenantId, t -> lru(maxEntriesPerTenant));
+        synchronized (cache) {
+            cache.put(user.getUsername(), new Entry(user, System.currentTimeMillis() + ttlSeconds * 1000));
+        }
+    }
+
+    public void invalidate(String tenantId, String username) {
+        Map<String, Entry> cache = tenants.get(tenantId);
+        if (cache != null) {
+            synchronized (cache) {
+                cache.remove(username);
+            }
+        }
+    }
+
+    public void clear() {
+        tenants.clear();
+    }
+
+    int cachedTenants() {
+        return tenants.size();
+    }
+
+    /** Drops tenants with nothing live left; true if that made room for another. */
+    private boolean evictExpiredTenants() {
+        long now = System.currentTimeMillis();
+        tenants.forEach((tenantId, cache) -> {
+            synchronized (cache) {
+                cache.values().removeIf(entry -> entry.expiresAt < now);
+                if (cache.isEmpty()) {
+                    tenants.remove(tenantId, cache);
+                }
+            }
+        });
+        return tenants.size() < maxTenants;
+    }
+
+    private static Map<String, Entry> lru(int maxEntries) {
+        return new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    private static class Entry {
+        private final User user;
+        private final long expiresAt;
+
+        Entry(User user, long expiresAt) {
+            this.user = user;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.biovault;
+
+import java.util.regex.Pattern;
+
+/**
+ * Tenant identifiers. Every request is scoped to the tenant named in the
+ * {@value #HEADER} header, or to {@value #DEFAULT_TENANT} when it is absent.
+ */
+public final class Tenants {
+
+    public static final String HEADER = "X-Tenant-Id";
+    public static final String DEFAULT_TENANT = "default";
+
+    // Fits users.tenant_id, and leaves '@' and '/' free to separate a tenant from a username
+    private static final Pattern ID_PATTERN = Pattern.compile("[A-Za-z0-9][A-Za-z0-9_-]{0,63}");
+
+    private Tenants() {
+    }
+
+    public static boolean isValidId(String tenantId) {
+        return tenantId != null && ID_PATTERN.matcher(tenantId).matches();
+    }
+
+    /** Guards per-tenant state against arbitrary header values; returns the ID unchanged. */
+    public static String requireValidId(String tenantId) {
+        if (!isValidId(tenantId)) {
+            throw new InvalidTenantException(tenantId);
+        }
+        return tenantId;
+    }
+
+    /** Usernames can't contain '@', so a qualified name never matches another tenant's bare one. */
+    public static boolean isValidUsername(String username) {
+        return username != null && !username.isEmpty() && username.indexOf('@') < 0;
+    }
+
+    /**
+     * The name a user's biometrics are stored under in face-auth. Usernames are only
+     * unique within a tenant; the default tenant keeps bare usernames so existing
+     * enrollments stay valid, including names with '@' registered before tenants existed.
+     */
+    public static String qualify(String tenantId, String username) {
+        requireValidId(tenantId);
+        if (DEFAULT_TENANT.equals(tenantId) && username != null && !username.isEmpty()) {
+            return username;
+        }
+        if (!isValidUsername(username)) {
+            throw new IllegalArgumentException("Invalid username '" + username + "'");
+        }
+        return username + "@" + tenantId;
+    }
+
+    /** Thrown for a tenant ID that isn't well-formed or isn't one of the configured tenants. */
+    public static class InvalidTenantException extends IllegalArgumentException {
+        public InvalidTenantException(String tenantId) {
+            super("Unknown tenant '" + tenantId + "'");
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.biovault;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Short-lived unlock tickets for trusted devices. After a successful biometric unlock
+ * the client may receive a ticket bound to its device id; presenting it again within
+ * the idle TTL unlocks without another face or voice check. Each use slides the
+ * expiry forward, up to a hard maximum lifetime from issue.
+ *
+ * Tickets live only in this node's memory. Revoking a user also rejects any ticket
+ * issued to them before the revocation, including ones this node never saw.
+ */
+@Component
+public class UnlockTicketService {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    @Value("${unlock.tickets.enabled:true}")
+    private boolean enabled;
+
+    @Value("${unlock.tickets.idle-ttl-seconds:300}")
+    private long idleTtlSeconds;
+
+    @Value("${unlock.tickets.max-lifetime-seconds:3600}")
+    private long maxLifetimeSeconds;
+
+    @Value("${unlock.tickets.max-tickets:100000}")
+    private int maxTickets;
+
+    private final LongSupplier clock;
+    private final ConcurrentHashMap<String, Ticket> tickets = new ConcurrentHashMap<>();
+    // Revocation list: per tenant/user, tickets issued before this time are invalid
+    private final ConcurrentHashMap<String, Long> revokedBefore = new ConcurrentHashMap<>();
+    private ScheduledExecutorService sweeper;
+
+    private final LongAdder unlocks = new LongAdder();
+    private final LongAdder servedFromTicket = new LongAdder();
+    private final LongAdder issued = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public UnlockTicketService() {
+        this.clock = System::currentTimeMillis;
+    }
+
+    UnlockTicketService(long idleTtlSeconds, long maxLifetimeSeconds, int maxTickets, LongSupplier clock) {
+        this.enabled = true;
+        this.idleTtlSeconds = idleTtlSeconds;
+        this.maxLifetimeSeconds = maxLifetimeSeconds;
+        this.maxTickets = maxTickets;
+        this.clock = clock;
+    }
+
+    @PostConstruct
+    public void start() {
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "unlock-ticket-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, 60, 60, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        sweeper.shutdownNow();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Counts an unlock attempt, for the served-from-ticket ratio. */
+    public void recordUnlock() {
+        unlocks.increment();
+    }
+
+    /**
+     * Issues a ticket for a device that just passed a biometric check, or returns null
+     * if tickets are disabled or the table is full.
+     */
+    public String issue(String tenantId, String username, String deviceId, String method, double confidence) {
+        if (!enabled || deviceId == null || deviceId.isEmpty()) {
+            return null;
+        }
+        if (tickets.size() >= maxTickets) {
+            sweep();
+            if (tickets.size() >= maxTickets) {
+                return null;
+            }
+        }
+        byte[] bytes = new byte[32];
+        RANDOM.nextBytes(bytes);
+        String id = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        long now = clock.getAsLong();
+        tickets.put(id, new Ticket(tenantId, username, deviceId, method, confidence, now,
+            now + idleTtlSeconds * 1000, now + maxLifetimeSeconds * 1000));
+        issued.increment();
+        return id;
+    }
+
+    /**
+     * Validates a ticket for this user and device and slides its expiry. Returns the
+     * ticket on success, null if it is unknown, expired, revoked or bound elsewhere.
+     */
+    public Ticket redeem(String ticketId, String tenantId, String username, String deviceId) {
+        if (!enabled || ticketId == null) {
+            return null;
+        }
+        Ticket ticket = tickets.get(ticketId);
+        long now = clock.getAsLong();
+        if (ticket == null || !ticket.tenantId.equals(tenantId) || !ticket.username.equals(username)
+                || !ticket.deviceId.equals(deviceId)) {
+            rejected.increment();
+            return null;
+        }
+        Long revoked = revokedBefore.get(userKey(tenantId, username));
+        synchronized (ticket) {
+            if (now >= ticket.expiresAt || (revoked != null && ticket.issuedAt <= revoked)) {
+                tickets.remove(ticketId, ticket);
+                rejected.increment();
+                return null;
+            }
+            ticket.expiresAt = Math.min(now + idleTtlSeconds * 1000, ticket.hardExpiresAt);
+        }
+        servedFromTicket.increment();
+        return ticket;
+    }
+
+    public void revoke(String ticketId) {
+        tickets.remove(ticketId);
+    }
+
+    /** Invalidates every ticket the user holds, e.g. after a credential change. */
+    public void revokeUser(String tenantId, String username) {
+        revokedBefore.put(userKey(tenantId, username), clock.getAsLong());
+        tickets.values().removeIf(t -> t.tenantId.equals(tenantId) && t.username.equals(username));
+    }
+
+    /** Drops every ticket on this node, when it can't tell which users changed. */
+    public void revokeAll() {
+        tickets.clear();
+    }
+
+    void sweep() {
+        long now = clock.getAsLong();
+        tickets.values().removeIf(t -> now >= t.expiresAt);
+        // Once every ticket that could predate a revocation has hit its hard expiry, the entry is moot
+        revokedBefore.values().removeIf(at -> at + maxLifetimeSeconds * 1000 <= now);
+    }
+
+    private static String userKey(String tenantId, String username) {
+        return tenantId + "/" + username;
+    }
+
+    public Map<String, Object> stats() {
+        long total = unlocks.sum();
+        long fromTicket = servedFromTicket.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("activeTickets", tickets.size());
+        stats.put("unlocks", total);
+        stats.put("servedFromTicket", fromTicket);
+        stats.put("servedFromTicketRatio", total == 0 ? 0.0 : (double) fromTicket / total);
+        stats.put("issued", issued.sum());
+        stats.put("rejected", rejected.sum());
+        return stats;
+    }
+
+    /** A device's standing permission to unlock without a biometric check. */
+    public static class Ticket {
+        private final String tenantId;
+        private final String username;
+        private final String deviceId;
+        private final String method;
+        private final double confidence;
+        private final long issuedAt;
+        private final long hardExpiresAt;
+        private long expiresAt;
+
+        Ticket(String tenantId, String username, String deviceId, String method, double confidence,
+               long issuedAt, long expiresAt, long hardExpiresAt) {
+            this.tenantId = tenantId;
+            this.username = username;
+            this.deviceId = deviceId;
+            this.method = method;
+            this.confidence = confidence;
+            this.issuedAt = issuedAt;
+            this.expiresAt = Math.min(expiresAt, hardExpiresAt);
+            this.hardExpiresAt = hardExpiresAt;
+        }
+
+        /** The biometric method that earned the ticket. */
+        public String getMethod() { return method; }
+        /** Confidence of the biometric check that earned the ticket. */
+        public double getConfidence() { return confidence; }
+    }
+}
@@ -6,25 +6,39 @@ import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
 
+// Usernames and emails are unique per tenant. In multi-tenant deployments the table is
+// partitioned by tenant_id, see db/tenant-partitioning.sql.
 @Entity
-@Table(name = "users")
+@Table(name = "users", uniqueConstraints = {
+    @UniqueConstraint(columnNames = {"tenant_id", "username"}),
+    @UniqueConstraint(columnNames = {"tenant_id", "email"})
+})
 public class User {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
+
+    @Column(name = "tenant_id", nullable = false, length = 64, columnDefinition = "varchar(64) default 'default'")
+    private String tenantId = Tenants.DEFAULT_TENANT;
+
     private String name;
 
-    @Column(unique = true, nullable = false)
+    @Column(nullable = false)
     private String email;
 
-    @Column(unique = true, nullable = false)
+    @Column(nullable = false)
     private String username;
     
     private String otp;
     private java.sql.Timestamp otpExpiry;
 
+    // Speaker embedding from the configured VoiceEngine; null until voice is enrolled
+    @Column(name = "voice_embedding", length = 1024)
+    private byte[] voiceEmbedding;
+
     // getters and setters
 
     public Long getId() {
@@ -35,6 +49,14 @@ public class User {
         this.id = id;
     }
 
+    public String getTenantId() {
+        return tenantId;
+    }
+
+    public void setTenantId(String tenantId) {
+        this.tenantId = tenantId;
+    }
+
     public String getName() {
         return name;
     }
@@ -74,4 +96,12 @@ public class User {
     public void setOtpExpiry(java.sql.Timestamp otpExpiry) {
         this.otpExpiry = otpExpiry;
     }
-}
\ No newline at end of file
+
+    public byte[] getVoiceEmbedding() {
+        return voiceEmbedding;
+    }
+
+    public void setVoiceEmbedding(byte[] voiceEmbedding) {
+        this.voiceEmbedding = voiceEmbedding;
+    }
+}
@@ -1,11 +1,18 @@
 package com.biovault;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Base64;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -16,6 +23,43 @@ public class UserController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private RequestCoalescer requestCoalescer;
+
+    @Autowired
+    private FaceImageIngest faceImageIngest;
+
+    @Autowired
+    private PreEncodedResponses preEncoded;
+
+    @Autowired
+    private Bulkheads bulkheads;
+
+    @Autowired
+    private UnlockTicketService unlockTickets;
+
+    // Only present when embeddings.store.enabled=true
+    @Autowired(required = false)
+    private EmbeddingStore embeddingStore;
+
+    // Absent in the warm-up context
+    @Autowired(required = false)
+    private ReenrollmentJob reenrollmentJob;
+
+    // Absent when voice.engine names an engine that isn't available
+    @Autowired(required = false)
+    private VoiceEngine voiceEngine;
+
+    // Re-requests inside this window get the already-issued OTP's state instead of a new code
+    @Value("${otp.resend-cooldown-seconds:60}")
+    private long otpResendCooldownSeconds;
+
+    // Wire format for face-auth verify calls: "json" (Base64 image) or "binary" (FaceWireCodec)
+    @Value("${faceauth.protocol:json}")
+    private String faceAuthProtocol;
+
+    private static final MediaType FACE_WIRE_TYPE = MediaType.parseMediaType(FaceWireCodec.CONTENT_TYPE);
+
     private final WebClient webClient;
 
     public UserController(WebClient.Builder webClientBuilder) {
@@ -24,59 +68,122 @@ public class UserController {
     }
 
     @PostMapping("/register")
-    public ResponseEntity<?> register(@RequestBody RegisterRequest request) {
+    public ResponseEntity<?> register(@RequestHeader(value = Tenants.HEADER, defaultValue = Tenants.DEFAULT_TENANT) String tenantId, @RequestBody RegisterRequest request) {
         try {
-            User user = userService.registerUser(request.getName(), request.getEmail(), request.getUsername());
+            User user = AuthStageEvent.time("register", "account", AuthStageEvent.DB_LOOKUP,
+                () -> userService.registerUser(tenantId, request.name(), request.email(), request.username()));
             return ResponseEntity.ok(new RegisterResponse(true, user.getId(), "Registration successful!"));
+        } catch (TenantQuotas.TenantBusyException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(new RegisterResponse(false, null, e.getMessage()));
         } catch (IllegalStateException e) {
             return ResponseEntity.status(HttpStatus.CONFLICT).body(new RegisterResponse(false, null, e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new RegisterResponse(false, null, e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(new RegisterResponse(false, null, "An unexpected error occurred."));
         }
     }
 
     @PostMapping("/request-otp")
-    public ResponseEntity<?> requestOtp(@RequestBody RequestOtpRequest request) {
+    public ResponseEntity<?> requestOtp(@RequestHeader(value = Tenants.HEADER, defaultValue = Tenants.DEFAULT_TENANT) String tenantId, @RequestBody RequestOtpRequest request) {
         try {
-            User user = userService.findByEmail(request.getEmail());
+            User user = AuthStageEvent.time("request-otp", "otp", AuthStageEvent.DB_LOOKUP,
+                () -> userService.findForOtpRequest(tenantId, request.email()));
             if (user == null) {
                 return ResponseEntity.status(404).body(new RequestOtpResponse(false, "Email not found"));
             }
-            // Call Python script
-            ProcessBuilder pb = new ProcessBuilder("python3", "otp_script.py", request.getEmail());
-            pb.directory(new java.io.File("backend-spring"));
-            Process p = pb.start();
-            int exitCode = p.waitFor();
+            if (userService.hasRecentOtp(user, otpResendCooldownSeconds * 1000)) {
+                return ResponseEntity.ok(new RequestOtpResponse(true, "OTP already sent to email"));
+            }
+            // Concurrent requests for the same email share one script run (one email, one code)
+            int exitCode = requestCoalescer.coalesceBlocking(
+                RequestCoalescer.key("request-otp", tenantId + "/" + request.email(), null),
+                () -> bulkheads.get(Bulkheads.OTP).call(() -> AuthStageEvent.time("request-otp", "otp",
+                    AuthStageEvent.DOWNSTREAM_CALL, () -> runOtpScript(tenantId, request.email()))));
             if (exitCode == 0) {
                 return ResponseEntity.ok(new RequestOtpResponse(true, "OTP sent to email"));
             } else {
                 return ResponseEntity.status(500).body(new RequestOtpResponse(false, "Failed to send OTP"));
             }
+        } catch (TenantQuotas.TenantBusyException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(new RequestOtpResponse(false, e.getMessage()));
+        } catch (Bulkhead.BulkheadException e) {
+            return ResponseEntity.status(bulkheadStatus(e)).body(new RequestOtpResponse(false, e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(new RequestOtpResponse(false, "Error requesting OTP"));
         }
     }
 
+    private int runOtpScript(String tenantId, String email) throws Exception {
+        // Call Python script
+        ProcessBuilder pb = new ProcessBuilder("python3", "otp_script.py", email, tenantId);
+        pb.directory(new java.io.File("backend-spring"));
+        Process p = pb.start();
+        try {
+            return p.waitFor();
+        } catch (InterruptedException e) {
+            // The OTP bulkhead timed out; don't leave the script running
+            p.destroyForcibly();
+            throw e;
+        }
+    }
+
+    private static HttpStatus bulkheadStatus(Bulkhead.BulkheadException e) {
+        return e instanceof Bulkhead.BulkheadTimeoutException ? HttpStatus.GATEWAY_TIMEOUT : HttpStatus.SERVICE_UNAVAILABLE;
+    }
+
     @PostMapping("/login")
-    public ResponseEntity<?> login(@RequestBody LoginRequest request) {
+    public ResponseEntity<?> login(@RequestHeader(value = Tenants.HEADER, defaultValue = Tenants.DEFAULT_TENANT) String tenantId, @RequestBody LoginRequest request) {
         try {
-            User user = userService.loginUser(request.getEmail(), request.getOtp());
+            User user = bulkheads.get(Bulkheads.LOGIN).call(() -> AuthStageEvent.time("login", "otp", AuthStageEvent.DB_LOOKUP,
+                () -> userService.loginUser(tenantId, request.email(), request.otp())));
             if (user != null) {
-                return ResponseEntity.ok(new LoginResponse(true, user.getId(), user.getUsername(), "token_" + System.currentTimeMillis()));
+                String token = AuthStageEvent.time("login", "otp", AuthStageEvent.TOKEN_ISSUE, () -> "token_" + System.currentTimeMillis());
+                return ResponseEntity.ok(new LoginResponse(true, user.getId(), user.getUsername(), token));
             } else {
-                return ResponseEntity.status(401).body(new LoginResponse(false, null, null, null));
+                return preEncoded.loginUnauthorized();
             }
+        } catch (TenantQuotas.TenantBusyException e) {
+            return preEncoded.loginTooManyRequests();
+        } catch (Bulkhead.BulkheadException e) {
+            return ResponseEntity.status(bulkheadStatus(e)).body(new LoginResponse(false, null, null, null));
         } catch (Exception e) {
-            return ResponseEntity.badRequest().body(new LoginResponse(false, null, null, null));
+            return preEncoded.loginBadRequest();
         }
     }
 
     @PostMapping("/biometrics/face/enroll")
-    public Mono<ResponseEntity<Map>> enrollFace(@RequestBody EnrollFaceRequest request) {
+    public Mono<ResponseEntity<Map>> enrollFace(@RequestHeader(value = Tenants.HEADER, defaultValue = Tenants.DEFAULT_TENANT) String tenantId, @RequestBody EnrollFaceRequest request) {
         // This flow looks correct. It forwards the request to Python's /enroll endpoint.
+        String faceUser;
+        try {
+            faceUser = Tenants.qualify(tenantId, request.username());
+        } catch (IllegalArgumentException e) {
+            return Mono.just(ResponseEntity.badRequest().<Map>body(Map.of("status", "error", "message", e.getMessage())));
+        }
+        Map<String, String> pythonRequest = Map.of(
+            "username", faceUser,
+            "faceEmbedding", request.faceEmbedding()
+        );
+        return Mono.defer(() -> {
+            // While re-enrollment switches models, a new face would only reach the old one
+            if (reenrollmentJob != null && !reenrollmentJob.beginEnrollment()) {
+                return Mono.just(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).<Map>body(Map.of("status", "error",
+                    "message", "Face enrollment is paused while face models are switched; try again shortly")));
+            }
+            return forwardEnrollment(tenantId, request.username(), faceUser, pythonRequest)
+                .doFinally(signal -> {
+                    if (reenrollmentJob != null) {
+                        reenrollmentJob.endEnrollment();
+                    }
+                });
+        });
+    }
+
+    private Mono<ResponseEntity<Map>> forwardEnrollment(String tenantId, String username, String faceUser, Map<String, String> pythonRequest) {
         return this.webClient.post()
             .uri("/enroll")
-            .bodyValue(request)
+            .bodyValue(pythonRequest)
             .retrieve()
             .onStatus(HttpStatus::isError, clientResponse -> 
                 clientResponse.bodyToMono(Map.class).flatMap(errorBody -> 
@@ -84,58 +191,171 @@ public class UserController {
                 )
             )
             .toEntity(Map.class)
+            // A new face invalidates tickets earned with the old one
+            .doOnNext(response -> unlockTickets.revokeUser(tenantId, username))
+            .flatMap(response -> announceCredentialChange(tenantId, username, response))
+            .flatMap(response -> storeEnrolledEmbedding(faceUser, response))
             .doOnError(throwable -> System.err.println("Error during face enrollment: " + throwable.getMessage()));
     }
 
+    /** Other nodes revoke their tickets too; the outbox write is JDBC, so it runs off the event loop. */
+    private Mono<ResponseEntity<Map>> announceCredentialChange(String tenantId, String username, ResponseEntity<Map> response) {
+        return Mono.fromCallable(() -> {
+            userService.credentialsChanged(tenantId, username);
+            return response;
+        }).subscribeOn(Schedulers.boundedElastic())
+            .onErrorResume(e -> {
+                // The enrollment itself succeeded; other nodes' tickets still expire on their own
+                System.err.println("Could not announce face enrollment: " + e.getMessage());
+                return Mono.just(response);
+            });
+    }
+
+    private Mono<ResponseEntity<Map>> storeEnrolledEmbedding(String faceUser, ResponseEntity<Map> response) {
+        Object embedding = response.getBody() == null ? null : response.getBody().get("embedding");
+        if (embeddingStore == null || !(embedding instanceof List)) {
+            return Mono.just(response);
+        }
+        // The delta log append is an fsync, so keep it off the event loop
+        return Mono.fromCallable(() -> {
+            List<?> values = (List<?>) embedding;
+            float[] vector = new float[values.size()];
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] = ((Number) values.get(i)).floatValue();
+            }
+            embeddingStore.enroll(faceUser, vector);
+            return response;
+        }).subscribeOn(Schedulers.boundedElastic())
+            .onErrorResume(e -> {
+                // Face-auth has the enrollment; the local copy is only for warm starts
+                System.err.println("Could not store embedding locally: " + e.getMessage());
+                return Mono.just(response);
+            });
+    }
+
+    @PostMapping("/biometrics/voice/enroll")
+    public ResponseEntity<?> enrollVoice(@RequestHeader(value = Tenants.HEADER, defaultValue = Tenants.DEFAULT_TENANT) String tenantId, @RequestBody EnrollVoiceRequest request) {
+        if (voiceEngine == null) {
+            return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).body(Map.of("status", "error", "message", "No voice engine configured"));
+        }
+        try {
+            float[] embedding = bulkheads.get(Bulkheads.VOICE).call(() -> AuthStageEvent.time("enroll-voice", "voice",
+                AuthStageEvent.DOWNSTREAM_CALL, () -> voiceEngine.embed(decodeAudio(request.audio()))));
+            if (!userService.enrollVoice(tenantId, request.username(), VoiceEngine.toBytes(embedding))) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("status", "error", "message", "User not found"));
+            }
+            unlockTickets.revokeUser(tenantId, request.username());
+            return ResponseEntity.ok(Map.of("status", "success", "message", "Voice enrolled"));
+        } catch (VoiceEngine.InvalidAudioException e) {
+            return ResponseEntity.badRequest().body(Map.of("status", "error", "message", e.getMessage()));
+        } catch (TenantQuotas.TenantBusyException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(Map.of("status", "error", "message", e.getMessage()));
+        } catch (Bulkhead.BulkheadException e) {
+            return ResponseEntity.status(bulkheadStatus(e)).body(Map.of("status", "error", "message", e.getMessage()));
+        } catch (Exception e) {
+            System.err.println("Error during voice enrollment: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("status", "error", "message", "Voice enrollment failed"));
+        }
+    }
+
+    private static InputStream decodeAudio(String audio) {
+        if (audio == null || audio.isEmpty()) {
+            throw new VoiceEngine.InvalidAudioException("No audio");
+        }
+        try {
+            return new ByteArrayInputStream(Base64.getDecoder().decode(audio));
+        } catch (IllegalArgumentException e) {
+            throw new VoiceEngine.InvalidAudioException("Audio is not valid Base64");
+        }
+    }
+
     // --- UPDATED METHOD ---
     @PostMapping("/auth/unlock")
-    public Mono<ResponseEntity<UnlockResponse>> unlock(@RequestBody UnlockRequest request) {
+    public Mono<ResponseEntity<?>> unlock(@RequestHeader(value = Tenants.HEADER, defaultValue = Tenants.DEFAULT_TENANT) String tenantId, @RequestBody UnlockRequest request) {
         
+        unlockTickets.recordUnlock();
+        if (request.ticket() != null) {
+            UnlockTicketService.Ticket ticket = unlockTickets.redeem(request.ticket(), tenantId, request.username(), request.deviceId());
+            if (ticket != null) {
+                // Trusted device within its window: no lookup and no biometric call
+                String token = "token_" + System.currentTimeMillis();
+                return Mono.just(ResponseEntity.ok(new UnlockResponse(true, ticket.getConfidence(), token, null, request.ticket())));
+            }
+            // Otherwise fall through to a full biometric check
+        }
+
         // Find the user first
-        User user = userService.unlockUser(request.getUsername());
+        User user;
+        try {
+            user = AuthStageEvent.time("unlock", request.method(), AuthStageEvent.DB_LOOKUP,
+                () -> userService.unlockUser(tenantId, request.username()));
+        } catch (TenantQuotas.TenantBusyException e) {
+            return Mono.just(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .body(new UnlockResponse(false, 0.0, null, e.getMessage())));
+        }
         if (user == null) {
-            return Mono.just(ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                .body(new UnlockResponse(false, 0.0, null)));
+            return Mono.just(preEncoded.unlockUnauthorized());
         }
 
-        if ("face".equals(request.getMethod())) {
+        if ("face".equals(request.method())) {
             // --- FACE UNLOCK ---
-            // Create a request body for the Python service
-            Map<String, String> pythonRequest = Map.of(
-                "username", request.getUsername(),
-                "faceEmbedding", request.getProof() // Use the 'proof' field for the Base64 image
-            );
-
-            // Call the Python /verify endpoint
-            return this.webClient.post()
-                .uri("/verify")
-                .bodyValue(pythonRequest)
-                .retrieve()
-                .toEntity(Map.class)
-                .flatMap(responseEntity -> {
-                    Map responseBody = responseEntity.getBody();
-                    if (responseBody != null && "success".equals(responseBody.get("status"))) {
+            // Identical concurrent unlocks share one call to the Python service
+            String flightKey = AuthStageEvent.time("unlock", "face", AuthStageEvent.HASHING,
+                () -> RequestCoalescer.key("unlock-face", tenantId + "/" + request.username(), request.proof()));
+            String faceUser;
+            try {
+                faceUser = Tenants.qualify(tenantId, request.username());
+            } catch (IllegalArgumentException e) {
+                return Mono.just(ResponseEntity.badRequest().body(new UnlockResponse(false, 0.0, null, e.getMessage())));
+            }
+            return requestCoalescer.coalesce(flightKey, () -> bulkheads.get(Bulkheads.FACE)
+                    .guard(() -> faceImageIngest.prepare(request.proof()).flatMap(image -> AuthStageEvent.timeMono(
+                        "unlock", "face", AuthStageEvent.DOWNSTREAM_CALL, () -> verifyFace(faceUser, image)))))
+                .<ResponseEntity<?>>map(verification -> {
+                    if (verification.isMatch()) {
                         // Python service verified the face
-                        String token = "token_" + System.currentTimeMillis();
-                        return Mono.just(ResponseEntity.ok(new UnlockResponse(true, 1.0, token))); // Confidence is hardcoded for now
+                        return unlocked(tenantId, request, verification.getConfidence());
                     } else {
                         // Python service rejected the face
-                        return Mono.just(ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                            .body(new UnlockResponse(false, 0.0, null)));
+                        return preEncoded.unlockUnauthorized();
                     }
                 })
+                .onErrorResume(FaceImageIngest.InvalidImageException.class, e ->
+                    // Rejected before reaching the Python service
+                    Mono.just(ResponseEntity.badRequest().body(new UnlockResponse(false, 0.0, null, e.getMessage()))))
+                .onErrorResume(Bulkhead.BulkheadException.class, e ->
+                    Mono.just(ResponseEntity.status(bulkheadStatus(e)).body(new UnlockResponse(false, 0.0, null, e.getMessage()))))
                 .onErrorResume(e -> {
                     // Error calling Python service
                     System.err.println("Error during face verification: " + e.getMessage());
-                    return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                        .body(new UnlockResponse(false, 0.0, null)));
+                    return Mono.just(preEncoded.unlockServerError());
                 });
 
-        } else if ("voice".equals(request.getMethod())) {
-            // --- VOICE UNLOCK (Not implemented in Spring) ---
-            // This logic would be similar to face, but likely needs multipart-form data for audio
-            return Mono.just(ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED)
-                .body(new UnlockResponse(false, 0.0, "Voice unlock not implemented in backend")));
+        } else if ("voice".equals(request.method())) {
+            // --- VOICE UNLOCK ---
+            // The proof is a Base64 16-bit PCM WAV recording, scored by the voice engine
+            if (voiceEngine == null) {
+                return Mono.just(ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED)
+                    .body(new UnlockResponse(false, 0.0, null, "No voice engine configured")));
+            }
+            if (user.getVoiceEmbedding() == null) {
+                return Mono.just(ResponseEntity.badRequest()
+                    .body(new UnlockResponse(false, 0.0, null, "No voice enrolled for this user")));
+            }
+            float[] enrolled = VoiceEngine.fromBytes(user.getVoiceEmbedding());
+            return Mono.fromCallable(() -> bulkheads.get(Bulkheads.VOICE).call(() -> AuthStageEvent.time("unlock", "voice",
+                    AuthStageEvent.DOWNSTREAM_CALL, () -> voiceEngine.verify(decodeAudio(request.proof()), enrolled))))
+                .<ResponseEntity<?>>map(verification -> verification.match()
+                    ? unlocked(tenantId, request, verification.score())
+                    : preEncoded.unlockUnauthorized())
+                .onErrorResume(VoiceEngine.InvalidAudioException.class, e ->
+                    Mono.just(ResponseEntity.badRequest().body(new UnlockResponse(false, 0.0, null, e.getMessage()))))
+                .onErrorResume(Bulkhead.BulkheadException.class, e ->
+                    Mono.just(ResponseEntity.status(bulkheadStatus(e)).body(new UnlockResponse(false, 0.0, null, e.getMessage()))))
+                .onErrorResume(e -> {
+                    System.err.println("Error during voice verification: " + e.getMessage());
+                    return Mono.just(preEncoded.unlockServerError());
+                });
 
         } else {
             // --- OTHER/DUMMY UNLOCK (Original behavior) ---
@@ -145,119 +365,82 @@ public class UserController {
         }
     }
     
-    // --- INNER CLASSES (No Changes Needed) ---
-
-    public static class EnrollFaceRequest {
-        private String username;
-        private String faceEmbedding;
-        public String getUsername() { return username; }
-        public void setUsername(String username) { this.username = username; }
-        public String getFaceEmbedding() { return faceEmbedding; }
-        public void setFaceEmbedding(String faceEmbedding) { this.faceEmbedding = faceEmbedding; }
-    }
-    
-    public static class RegisterRequest {
-        private String name;
-        private String email;
-        private String username;
-        public String getName() { return name; }
-        public void setName(String name) { this.name = name; }
-        public String getEmail() { return email; }
-        public void setEmail(String email) { this.email = email; }
-        public String getUsername() { return username; }
-        public void setUsername(String username) { this.username = username; }
+    /** A passed biometric check; trusted devices (those sending a device id) also get a ticket. */
+    private ResponseEntity<?> unlocked(String tenantId, UnlockRequest request, double confidence) {
+        return AuthStageEvent.time("unlock", request.method(), AuthStageEvent.TOKEN_ISSUE, () -> {
+            String token = "token_" + System.currentTimeMillis();
+            String ticket = unlockTickets.issue(tenantId, request.username(), request.deviceId(), request.method(), confidence);
+            return ResponseEntity.ok(new UnlockResponse(true, confidence, token, null, ticket));
+        });
     }
 
-    public static class RegisterResponse {
-        private boolean success;
-        private Long userId;
-        private String message;
-        public RegisterResponse(boolean success, Long userId, String message) {
-            this.success = success;
-            this.userId = userId;
-            this.message = message;
+    private Mono<FaceWireCodec.FaceVerification> verifyFace(String faceUser, FaceImageIngest.PreparedImage image) {
+        if ("binary".equals(faceAuthProtocol)) {
+            // Raw image bytes in a length-prefixed frame; see FaceWireCodec
+            byte[] frame = FaceWireCodec.encodeImageRequest(faceUser, image.getBytes());
+            return this.webClient.post()
+                .uri("/verify-bin")
+                .contentType(FACE_WIRE_TYPE)
+                .accept(FACE_WIRE_TYPE)
+                .bodyValue(frame)
+                .exchangeToMono(response -> response.bodyToMono(byte[].class))
+                .switchIfEmpty(Mono.error(new IllegalStateException("Empty response from face-auth")))
+                .map(FaceWireCodec::decodeResponse);
         }
-        public boolean isSuccess() { return success; }
-        public Long getUserId() { return userId; }
-        public String getMessage() { return message; }
+
+        // Create a request body for the Python service
+        Map<String, String> pythonRequest = Map.of(
+            "username", faceUser,
+            "faceEmbedding", image.getBase64() // The (possibly downscaled) 'proof' image as Base64
+        );
+        return this.webClient.post()
+            .uri("/verify")
+            .bodyValue(pythonRequest)
+            .retrieve()
+            .bodyToMono(Map.class)
+            .map(body -> FaceWireCodec.FaceVerification.fromDistance(
+                "success".equals(body.get("status")), (Number) body.get("distance")));
     }
 
-    public static class LoginRequest {
-        private String email;
-        private String otp;
-        public String getEmail() { return email; }
-        public void setEmail(String email) { this.email = email; }
-        public String getOtp() { return otp; }
-        public void setOtp(String otp) { this.otp = otp; }
+    // --- INNER CLASSES ---
+    // Immutable records; Jackson binds them through their canonical constructors
+
+    public record EnrollFaceRequest(String username, String faceEmbedding) {
     }
 
-    public static class LoginResponse {
-        private boolean success;
-        private Long userId;
-        private String username;
-        private String token;
-        public LoginResponse(boolean success, Long userId, String username, String token) {
-            this.success = success;
-            this.userId = userId;
-            this.username = username;
-            this.token = token;
-        }
-        public boolean isSuccess() { return success; }
-        public Long getUserId() { return userId; }
-        public String getUsername() { return username; }
-        public String getToken() { return token; }
+    // audio: Base64 16-bit PCM WAV
+    public record EnrollVoiceRequest(String username, String audio) {
     }
-    
-    public static class UnlockRequest {
-        private String username;
-        private String method;
-        private String proof;
-        public String getUsername() { return username; }
-        public void setUsername(String username) { this.username = username; }
-        public String getMethod() { return method; }
-        public void setMethod(String method) { this.method = method; }
-        public String getProof() { return proof; }
-        public void setProof(String proof) { this.proof = proof; }
+
+    public record RegisterRequest(String name, String email, String username) {
     }
 
-    public static class UnlockResponse {
-        private boolean success;
-        private double confidence;
-        private String token;
-        private String message; // Added for error messages
+    public record RegisterResponse(boolean success, Long userId, String message) {
+    }
+
+    public record LoginRequest(String email, String otp) {
+    }
+
+    public record LoginResponse(boolean success, Long userId, String username, String token) {
+    }
 
+    // deviceId and ticket are optional; see UnlockTicketService
+    public record UnlockRequest(String username, String method, String proof, String deviceId, String ticket) {
+    }
+
+    public record UnlockResponse(boolean success, double confidence, String token, String message, String ticket) {
         public UnlockResponse(boolean success, double confidence, String token) {
-            this.success = success;
-            this.confidence = confidence;
-            this.token = token;
+            this(success, confidence, token, null, null);
         }
-        
+
         public UnlockResponse(boolean success, double confidence, String token, String message) {
-            this.success = success;
-            this.confidence = confidence;
-            this.token = token;
-            this.message = message;
+            this(success, confidence, token, message, null);
         }
-        public boolean isSuccess() { return success; }
-        public double getConfidence() { return confidence; }
-        public String getToken() { return token; }
-        public String getMessage() { return message; }
     }
 
-    public static class RequestOtpRequest {
-        private String email;
-        public String getEmail() { return email; }
-        public void setEmail(String email) { this.email = email; }
+    public record RequestOtpRequest(String email) {
     }
 
-    public static class RequestOtpResponse {
-        private boolean success;
-        private String message;
-        public RequestOtpResponse(boolean success, String message) {
-            this.success = success;
-            this.message = message;
-        }
-        public boolean isSuccess() { return success; }
-        public String getMessage() { return message; }
+    public record RequestOtpResponse(boolean success, String message) {
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,205 @@
+package com.biovault;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Admin listing and export of users without loading the table.
+ *
+ * Both walk {@code users.id} with keyset pagination ({@code id > cursor}), so a page
+ * deep into the table costs the same as the first. Exports stream each chunk from a
+ * JDBC cursor in its own short read-only transaction (served by a replica when routing
+ * is enabled), clearing the persistence context every few hundred rows, so memory stays
+ * flat however many users there are.
+ */
+@Service
+public class UserExportService {
+
+    public enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String contentType() { return contentType; }
+        public String extension() { return extension; }
+
+        public static Format parse(String name) {
+            try {
+                return valueOf(name.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown export format " + name + ", use ndjson or csv");
+            }
+        }
+    }
+
+    private static final String CSV_HEADER = "id,tenantId,username,email,name,voiceEnrolled\n";
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final TransactionTemplate readOnlyTransaction;
+
+    @Value("${users.list.max-limit:500}")
+    private int maxListLimit;
+
+    // Rows per transaction; keeps each read snapshot short on a busy primary
+    @Value("${users.export.chunk-size:10000}")
+    private int chunkSize;
+
+    // Rows between persistence context clears and output flushes
+    @Value("${users.export.clear-every:500}")
+    private int clearEvery;
+
+    @Autowired
+    public UserExportService(PlatformTransactionManager transactionManager) {
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    UserExportService(UserRepository userRepository, EntityManager entityManager, ObjectMapper objectMapper,
+                      PlatformTransactionManager transactionManager, int chunkSize, int clearEvery) {
+        this(transactionManager);
+        this.userRepository = userRepository;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        this.maxListLimit = 500;
+        this.chunkSize = chunkSize;
+        this.clearEvery = clearEvery;
+    }
+
+    /** One page of users after {@code afterId}; pass the returned cursor to get the next. */
+    @Transactional(readOnly = true)
+    public UserPage list(String tenantId, long afterId, int limit) {
+        PageRequest page = PageRequest.of(0, Math.max(1, Math.min(limit, maxListLimit)));
+        List<User> users = tenantId == null
+            ? userRepository.findByIdGreaterThanOrderByIdAsc(afterId, page)
+            : userRepository.findByTenantIdAndIdGreaterThanOrderByIdAsc(tenantId, afterId, page);
+        List<UserRow> rows = users.stream().map(UserRow::from).collect(Collectors.toList());
+        Long nextCursor = users.size() < page.getPageSize() ? null : users.get(users.size() - 1).getId();
+        return new UserPage(rows, nextCursor);
+    }
+
+    /**
+     * Writes every user after {@code afterId} (all tenants if {@code tenantId} is null) to
+     * {@code out}. Rows are in id order, so an interrupted download can be resumed from the
+     * last id it received. Returns the number of rows written.
+     */
+    public long export(String tenantId, long afterId, Format format, OutputStream out) throws IOException {
+        BufferedOutputStream buffered = new BufferedOutputStream(out, 64 * 1024);
+        if (format == Format.CSV) {
+            buffered.write(CSV_HEADER.getBytes(StandardCharsets.UTF_8));
+        }
+        long written = 0;
+        long cursor = afterId;
+        while (true) {
+            long chunkStart = cursor;
+            long[] chunk = readOnlyTransaction.execute(status -> writeChunk(tenantId, chunkStart, format, buffered));
+            written += chunk[0];
+            if (chunk[0] < chunkSize) {
+                break;
+            }
+            cursor = chunk[1];
+        }
+        buffered.flush();
+        return written;
+    }
+
+    /** Returns {rows written, last id}. */
+    private long[] writeChunk(String tenantId, long afterId, Format format, OutputStream out) {
+        PageRequest page = PageRequest.of(0, chunkSize);
+        long count = 0;
+        long lastId = afterId;
+        try (Stream<User> users = tenantId == null
+                ? userRepository.streamByIdGreaterThan(afterId, page)
+                : userRepository.streamByTenantIdAndIdGreaterThan(tenantId, afterId, page)) {
+            Iterator<User> it = users.iterator();
+            while (it.hasNext()) {
+                User user = it.next();
+                writeRow(UserRow.from(user), format, out);
+                lastId = user.getId();
+                if (++count % clearEvery == 0) {
+                    // Streamed entities stay managed until cleared; without this the context grows with the table
+                    entityManager.clear();
+                    out.flush();
+                }
+            }
+            entityManager.clear();
+        } catch (IOException e) {
+            // Usually the client went away; rolls back the (read-only) transaction and ends the export
+            throw new UncheckedIOException(e);
+        }
+        return new long[] { count, lastId };
+    }
+
+    private void writeRow(UserRow row, Format format, OutputStream out) throws IOException {
+        if (format == Format.NDJSON) {
+            out.write(objectMapper.writeValueAsBytes(row));
+            out.write('\n');
+            return;
+        }
+        StringBuilder line = new StringBuilder(128);
+        line.append(row.id()).append(',');
+        appendCsv(line, row.tenantId()).append(',');
+        appendCsv(line, row.username()).append(',');
+        appendCsv(line, row.email()).append(',');
+        appendCsv(line, row.name()).append(',');
+        line.append(row.voiceEnrolled()).append('\n');
+        out.write(line.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    static StringBuilder appendCsv(StringBuilder line, String value) {
+        if (value == null) {
+            return line;
+        }
+        // Spreadsheets run cells starting with these as formulas; user-supplied names can't be trusted
+        if (!value.isEmpty() && "=+-@".indexOf(value.charAt(0)) >= 0) {
+            value = "'" + value;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return line.append(value);
+        }
+        return line.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    /** What admins see of a user: no OTP state or biometric data. */
+    public record UserRow(Long id, String tenantId, String username, String email, String name, boolean voiceEnrolled) {
+        static UserRow from(User user) {
+            return new UserRow(user.getId(), user.getTenantId(), user.getUsername(), user.getEmail(), user.getName(),
+                user.getVoiceEmbedding() != null);
+        }
+    }
+
+    public record UserPage(List<UserRow> users, Long nextCursor) {}
+}
@@ -1,10 +1,48 @@
 package com.biovault;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import javax.persistence.QueryHint;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 public interface UserRepository extends JpaRepository<User, Long> {
 
+    // Rows the JDBC driver buffers per round trip when streaming. PostgreSQL only honours
+    // it inside a transaction; otherwise it reads the whole result set into memory.
+    String STREAM_FETCH_SIZE = "500";
+
     User findByUsername(String username);
     User findByEmail(String email); // Add this line
 
-}
\ No newline at end of file
+    // Tenant-scoped lookups; these prune to the tenant's partition
+    User findByTenantIdAndUsername(String tenantId, String username);
+    User findByTenantIdAndEmail(String tenantId, String email);
+
+    // Keyset pages over the primary key: cost doesn't grow with how far in the page is
+    List<User> findByIdGreaterThanOrderByIdAsc(Long afterId, Pageable page);
+    List<User> findByTenantIdAndIdGreaterThanOrderByIdAsc(String tenantId, Long afterId, Pageable page);
+
+    // Streaming variants for exports; callers must consume them inside a transaction and close them
+    @QueryHints({
+        @QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE),
+        @QueryHint(name = HINT_READONLY, value = "true")
+    })
+    @Query("select u from User u where u.id > :afterId order by u.id")
+    Stream<User> streamByIdGreaterThan(@Param("afterId") Long afterId, Pageable page);
+
+    @QueryHints({
+        @QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE),
+        @QueryHint(name = HINT_READONLY, value = "true")
+    })
+    @Query("select u from User u where u.tenantId = :tenantId and u.id > :afterId order by u.id")
+    Stream<User> streamByTenantIdAndIdGreaterThan(@Param("tenantId") String tenantId, @Param("afterId") Long afterId, Pageable page);
+
+}
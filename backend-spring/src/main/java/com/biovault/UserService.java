@@ -2,48 +2,160 @@ package com.biovault;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.Objects;
 
 @Service
 public class UserService {
 
+    // How long an OTP stays valid; must match the expiry set by otp_script.py.
+    static final long OTP_VALIDITY_MILLIS = 5 * 60 * 1000;
+
     @Autowired
     private UserRepository userRepository;
 
-    public User registerUser(String name, String email, String username) {
-        // Check if a user with the same username or email already exists
-        if (userRepository.findByUsername(username) != null) {
+    @Autowired
+    private TenantUserCache userCache;
+
+    @Autowired
+    private TenantQuotas tenantQuotas;
+
+    // Absent when invalidation.enabled=false (single node) and in the warm-up context
+    @Autowired(required = false)
+    private InvalidationBus invalidationBus;
+
+    public User registerUser(String tenantId, String name, String email, String username) {
+        if (!Tenants.isValidUsername(username)) {
+            throw new IllegalArgumentException("Usernames can't be empty or contain '@'.");
+        }
+        // Check if a user with the same username or email already exists in this tenant
+        if (tenantQuotas.call(tenantId, () -> userRepository.findByTenantIdAndUsername(tenantId, username)) != null) {
             throw new IllegalStateException("Username '" + username + "' is already taken.");
         }
-        if (userRepository.findByEmail(email) != null) {
+        if (tenantQuotas.call(tenantId, () -> userRepository.findByTenantIdAndEmail(tenantId, email)) != null) {
             throw new IllegalStateException("Email '" + email + "' is already registered.");
         }
 
         User user = new User();
+        user.setTenantId(tenantId);
         user.setName(name);
         user.setEmail(email);
         user.setUsername(username);
-        return userRepository.save(user);
+        return tenantQuotas.call(tenantId, () -> userRepository.save(user));
     }
 
-    public User loginUser(String email, String otp) {
-        User user = userRepository.findByEmail(email);
+    // Other nodes hear about the consumed OTP once this transaction commits
+    @Transactional
+    public User loginUser(String tenantId, String email, String otp) {
+        User user = findByEmail(tenantId, email);
         if (user != null && Objects.equals(user.getOtp(), otp) && user.getOtpExpiry() != null && user.getOtpExpiry().after(new java.sql.Timestamp(System.currentTimeMillis()))) {
             // Clear OTP after successful login
             user.setOtp(null);
             user.setOtpExpiry(null);
-            userRepository.save(user);
+            tenantQuotas.call(tenantId, () -> userRepository.save(user));
+            invalidateAfterCommit(tenantId, user.getUsername(), InvalidationEvent.USER_UPDATED);
             return user;
         }
         return null;
     }
 
-    public User findByEmail(String email) {
-        return userRepository.findByEmail(email);
+    // Read-only lookups may be served by a replica when replica routing is enabled
+    @Transactional(readOnly = true)
+    public User findByEmail(String tenantId, String email) {
+        // Not cached: the OTP columns are written by otp_script.py behind our back
+        return tenantQuotas.call(tenantId, () -> userRepository.findByTenantIdAndEmail(tenantId, email));
     }
 
-    public User unlockUser(String username) {
-        return userRepository.findByUsername(username);
+    /**
+     * Looks up the user behind an OTP request on the primary. A lagging replica can still
+     * show a code that a login has just used up, and the cooldown would then point the
+     * user at a code that no longer works.
+     */
+    @Transactional
+    public User findForOtpRequest(String tenantId, String email) {
+        return tenantQuotas.call(tenantId, () -> userRepository.findByTenantIdAndEmail(tenantId, email));
+    }
+
+    /**
+     * True if an OTP was issued to this user less than {@code cooldownMillis} ago and is
+     * still valid, in which case a re-request should not send a new code.
+     */
+    public boolean hasRecentOtp(User user, long cooldownMillis) {
+        if (user.getOtp() == null || user.getOtpExpiry() == null) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        long issuedAt = user.getOtpExpiry().getTime() - OTP_VALIDITY_MILLIS;
+        return user.getOtpExpiry().getTime() > now && now < issuedAt + cooldownMillis;
+    }
+
+    @Transactional(readOnly = true)
+    public User unlockUser(String tenantId, String username) {
+        User user = userCache.get(tenantId, username);
+        if (user == null) {
+            user = tenantQuotas.call(tenantId, () -> userRepository.findByTenantIdAndUsername(tenantId, username));
+            if (user != null) {
+                userCache.put(tenantId, user);
+            }
+        }
+        return user;
+    }
+
+    /** Stores the user's voice embedding; returns false if there is no such user. */
+    @Transactional
+    public boolean enrollVoice(String tenantId, String username, byte[] voiceEmbedding) {
+        User user = tenantQuotas.call(tenantId, () -> userRepository.findByTenantIdAndUsername(tenantId, username));
+        if (user == null) {
+            return false;
+        }
+        user.setVoiceEmbedding(voiceEmbedding);
+        tenantQuotas.call(tenantId, () -> userRepository.save(user));
+        invalidateAfterCommit(tenantId, username, InvalidationEvent.CREDENTIALS_CHANGED);
+        return true;
+    }
+
+    /**
+     * Tells other nodes a credential held outside this database (e.g. the face in
+     * face-auth) changed, so they revoke what was earned with the old one.
+     */
+    public void credentialsChanged(String tenantId, String username) {
+        publishChange(tenantId, username, InvalidationEvent.CREDENTIALS_CHANGED);
+    }
+
+    /**
+     * Drops the cached user and tells the other nodes once the change has committed.
+     * Dropping it earlier would let a concurrent lookup cache the old row again (OTP
+     * included), and this node skips its own notifications, so nothing would remove it
+     * before the TTL. Announcing afterwards, in its own transaction, keeps a failed
+     * announcement from rolling back the change.
+     */
+    private void invalidateAfterCommit(String tenantId, String username, String kind) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            userCache.invalidate(tenantId, username);
+            publishChange(tenantId, username, kind);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                userCache.invalidate(tenantId, username);
+                publishChange(tenantId, username, kind);
+            }
+        });
+    }
+
+    /** Other nodes fall back to their cache TTL if this fails, e.g. without the outbox table. */
+    private void publishChange(String tenantId, String username, String kind) {
+        if (invalidationBus == null) {
+            return;
+        }
+        try {
+            invalidationBus.publish(tenantId, username, kind);
+        } catch (RuntimeException e) {
+            System.err.println("Could not announce " + kind + " for " + tenantId + "/" + username + ": " + e.getMessage());
+        }
     }
-}
\ No newline at end of file
+}
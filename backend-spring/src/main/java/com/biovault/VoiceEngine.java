@@ -0,0 +1,42 @@
+package com.biovault;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Speaker verification backend for voice unlock. Enrollment turns a recording into a
+ * speaker embedding that is stored with the user; verification scores a new
+ * recording against it. Select the implementation with {@code voice.engine}.
+ */
+public interface VoiceEngine {
+
+    /** Speaker embedding for a WAV recording, as stored at enrollment. */
+    float[] embed(InputStream wav) throws IOException;
+
+    /** Scores a WAV recording against an enrolled embedding. */
+    Verification verify(InputStream wav, float[] enrolled) throws IOException;
+
+    record Verification(boolean match, double score) {
+    }
+
+    /** Embeddings are stored on the user as raw big-endian floats. */
+    static byte[] toBytes(float[] embedding) {
+        ByteBuffer buffer = ByteBuffer.allocate(embedding.length * Float.BYTES);
+        buffer.asFloatBuffer().put(embedding);
+        return buffer.array();
+    }
+
+    static float[] fromBytes(byte[] bytes) {
+        float[] embedding = new float[bytes.length / Float.BYTES];
+        ByteBuffer.wrap(bytes).asFloatBuffer().get(embedding);
+        return embedding;
+    }
+
+    /** The recording is not usable: not 16-bit PCM WAV, too long, or too little speech. */
+    class InvalidAudioException extends RuntimeException {
+        public InvalidAudioException(String message) {
+            super(message);
+        }
+    }
+}
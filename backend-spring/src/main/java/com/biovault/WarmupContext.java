@@ -0,0 +1,109 @@
+package com.biovault;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A throwaway copy of the auth stack for {@link WarmupRunner}: the real controller and
+ * services, but backed by an in-memory H2 database and a local stand-in for face-auth
+ * that matches every face. Nothing in it touches the application's database or
+ * downstream services, and it is closed once warm-up is done.
+ *
+ * Deliberately not a component, so the application's component scan never sees
+ * {@link Config}.
+ */
+final class WarmupContext {
+
+    static final String STUB_VERIFY_JSON = "{\"status\":\"success\",\"distance\":0.31}";
+
+    private WarmupContext() {
+    }
+
+    static ConfigurableApplicationContext create(ConfigurableEnvironment environment, ObjectMapper objectMapper) {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        // Same properties as the application, so bulkheads, protocol etc. match production
+        context.setEnvironment(environment);
+        context.getBeanFactory().registerSingleton("objectMapper", objectMapper);
+        context.register(Config.class, UserController.class, UserService.class, TenantUserCache.class,
+            TenantQuotas.class, RequestCoalescer.class, FaceImageIngest.class, PreEncodedResponses.class, Bulkheads.class,
+            UnlockTicketService.class);
+        context.refresh();
+        return context;
+    }
+
+    @EnableTransactionManagement
+    @EnableJpaRepositories(basePackageClasses = UserRepository.class,
+        includeFilters = @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = UserRepository.class))
+    static class Config {
+
+        @Bean(destroyMethod = "shutdown")
+        public EmbeddedDatabase dataSource() {
+            return new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).generateUniqueName(true).build();
+        }
+
+        @Bean
+        public LocalContainerEntityManagerFactoryBean entityManagerFactory(DataSource dataSource) {
+            LocalContainerEntityManagerFactoryBean factory = new LocalContainerEntityManagerFactoryBean();
+            factory.setDataSource(dataSource);
+            factory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+            factory.setPackagesToScan(User.class.getPackage().getName());
+            // Only the live entity; subpackages may hold others
+            factory.setPersistenceUnitPostProcessors(unit -> unit.getManagedClassNames().retainAll(List.of(User.class.getName())));
+            factory.setJpaPropertyMap(Map.of("hibernate.hbm2ddl.auto", "create-drop"));
+            return factory;
+        }
+
+        @Bean
+        public PlatformTransactionManager transactionManager(EntityManagerFactory entityManagerFactory) {
+            return new JpaTransactionManager(entityManagerFactory);
+        }
+
+        /** Answers face-auth's verify endpoints (JSON and binary) with a match. */
+        @Bean(destroyMethod = "disposeNow")
+        public DisposableServer faceAuthStub() {
+            byte[] frame = ByteBuffer.allocate(12).put(FaceWireCodec.VERSION).put(FaceWireCodec.STATUS_MATCH)
+                .putFloat(0.31f).putFloat(0.69f).putShort((short) 0).array();
+            return HttpServer.create().host("127.0.0.1").port(0)
+                .route(routes -> routes
+                    .post("/verify", (request, response) -> request.receive().then(
+                        response.header("Content-Type", "application/json").sendString(Mono.just(STUB_VERIFY_JSON)).then()))
+                    .post("/verify-bin", (request, response) -> request.receive().then(
+                        response.header("Content-Type", FaceWireCodec.CONTENT_TYPE).sendByteArray(Mono.just(frame)).then())))
+                .bindNow();
+        }
+
+        /** The controller sets face-auth's real base URL; send those calls to the stub instead. */
+        @Bean
+        public WebClient.Builder webClientBuilder(DisposableServer faceAuthStub) {
+            return WebClient.builder().filter((request, next) -> next.exchange(ClientRequest.from(request)
+                .url(UriComponentsBuilder.fromUri(request.url()).host(faceAuthStub.host()).port(faceAuthStub.port()).build(true).toUri())
+                .build()));
+        }
+    }
+}
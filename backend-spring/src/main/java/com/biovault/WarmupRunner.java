@@ -0,0 +1,240 @@
+package com.biovault;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.management.ObjectName;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Runs synthetic register, login and face-unlock traffic through {@link UserController}
+ * before the instance reports ready, so the JIT has compiled the Jackson, Hibernate and
+ * Reactor paths before real users hit them. The traffic goes to a {@link WarmupContext}
+ * (in-memory database, stubbed face-auth), never to the real database or services.
+ *
+ * This listener runs inside ApplicationReadyEvent, and Spring Boot only switches the
+ * readiness state to ACCEPTING_TRAFFIC after those listeners return, so
+ * GET /api/admin/readiness answers 503 until warm-up has finished.
+ */
+@Component
+@ConditionalOnProperty(name = "warmup.enabled", havingValue = "true")
+public class WarmupRunner implements ApplicationListener<ApplicationReadyEvent> {
+
+    // Operations averaged at the start and end of the run to report the latency delta
+    private static final int SAMPLE = 100;
+
+    @Value("${warmup.iterations:2000}")
+    private int iterations;
+
+    @Value("${warmup.max-duration-seconds:60}")
+    private long maxDurationSeconds;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ConfigurableEnvironment environment;
+
+    private volatile Map<String, Object> report = Map.of("state", "pending");
+
+    public WarmupRunner() {
+    }
+
+    WarmupRunner(int iterations, long maxDurationSeconds, ObjectMapper objectMapper, ConfigurableEnvironment environment) {
+        this.iterations = iterations;
+        this.maxDurationSeconds = maxDurationSeconds;
+        this.objectMapper = objectMapper;
+        this.environment = environment;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        AvailabilityChangeEvent.publish(event.getApplicationContext(), ReadinessState.REFUSING_TRAFFIC);
+        try {
+            report = run();
+            System.out.println("JIT warm-up finished: " + report);
+        } catch (Exception e) {
+            // A failed warm-up only costs latency; don't keep the instance out of rotation for it
+            System.err.println("JIT warm-up failed: " + e.getMessage());
+            report = Map.of("state", "failed", "message", String.valueOf(e.getMessage()));
+        }
+    }
+
+    public Map<String, Object> getReport() {
+        return report;
+    }
+
+    Map<String, Object> run() throws Exception {
+        long start = System.nanoTime();
+        long deadline = start + maxDurationSeconds * 1_000_000_000L;
+        CompilerSnapshot before = CompilerSnapshot.take();
+        long[] registerNanos = new long[iterations];
+        long[] loginNanos = new long[iterations];
+        long[] unlockNanos = new long[iterations];
+        String smallFace = face(160, 160, "png");
+        // Every so often an oversized image, to warm the downscaling path as well
+        String largeFace = face(1280, 960, "jpeg");
+
+        int completed = 0;
+        try (ConfigurableApplicationContext context = WarmupContext.create(environment, objectMapper)) {
+            UserController controller = context.getBean(UserController.class);
+            UserRepository users = context.getBean(UserRepository.class);
+            String tenant = Tenants.DEFAULT_TENANT;
+
+            for (int i = 0; i < iterations && System.nanoTime() < deadline; i++) {
+                String username = "warmup" + i;
+                String email = username + "@warmup.invalid";
+
+                long t0 = System.nanoTime();
+                respond(controller.register(tenant, read("{\"name\":\"Warm Up\",\"email\":\"" + email
+                    + "\",\"username\":\"" + username + "\"}", UserController.RegisterRequest.class)));
+                registerNanos[i] = System.nanoTime() - t0;
+
+                // Stand in for otp_script.py
+                User user = users.findByTenantIdAndEmail(tenant, email);
+                user.setOtp("123456");
+                user.setOtpExpiry(new Timestamp(System.currentTimeMillis() + UserService.OTP_VALIDITY_MILLIS));
+                users.save(user);
+
+                t0 = System.nanoTime();
+                respond(controller.login(tenant, read("{\"email\":\"" + email + "\",\"otp\":\"123456\"}",
+                    UserController.LoginRequest.class)));
+                loginNanos[i] = System.nanoTime() - t0;
+
+                t0 = System.nanoTime();
+                String proof = i % 50 == 49 ? largeFace : smallFace;
+                respond(controller.unlock(tenant, read("{\"username\":\"" + username + "\",\"method\":\"face\",\"proof\":\""
+                    + proof + "\"}", UserController.UnlockRequest.class)).block());
+                unlockNanos[i] = System.nanoTime() - t0;
+                completed++;
+            }
+        }
+        CompilerSnapshot after = CompilerSnapshot.take();
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("state", "done");
+        result.put("iterations", completed);
+        result.put("durationMs", (System.nanoTime() - start) / 1_000_000);
+        result.put("compiledMethodsBefore", before.compiledMethods);
+        result.put("compiledMethodsAfter", after.compiledMethods);
+        result.put("c2MethodsBefore", before.c2Methods);
+        result.put("c2MethodsAfter", after.c2Methods);
+        result.put("compilationTimeMs", after.compilationTimeMs - before.compilationTimeMs);
+        result.put("registerMicros", latencyDelta(registerNanos, completed));
+        result.put("loginMicros", latencyDelta(loginNanos, completed));
+        result.put("unlockMicros", latencyDelta(unlockNanos, completed));
+        return result;
+    }
+
+    // Requests go through Jackson both ways, as they would through the message converters
+    private <T> T read(String json, Class<T> type) throws IOException {
+        return objectMapper.readValue(json.getBytes(StandardCharsets.UTF_8), type);
+    }
+
+    private void respond(ResponseEntity<?> response) throws IOException {
+        if (response == null || !response.getStatusCode().is2xxSuccessful()) {
+            throw new IllegalStateException("Warm-up request failed: " + response);
+        }
+        if (!(response.getBody() instanceof byte[])) {
+            objectMapper.writeValueAsBytes(response.getBody());
+        }
+    }
+
+    /** Mean latency of the first and last operations of the run, in microseconds. */
+    private static Map<String, Object> latencyDelta(long[] nanos, int count) {
+        int sample = Math.min(SAMPLE, count / 2);
+        Map<String, Object> delta = new LinkedHashMap<>();
+        if (sample == 0) {
+            return delta;
+        }
+        double first = mean(nanos, 0, sample) / 1000;
+        double last = mean(nanos, count - sample, count) / 1000;
+        delta.put("first", Math.round(first));
+        delta.put("last", Math.round(last));
+        delta.put("speedup", Math.round(first / last * 10) / 10.0);
+        return delta;
+    }
+
+    private static double mean(long[] values, int from, int to) {
+        long sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += values[i];
+        }
+        return (double) sum / (to - from);
+    }
+
+    private static String face(int width, int height, String format) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt(0x1000000));
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, format, out);
+        return Base64.getEncoder().encodeToString(out.toByteArray());
+    }
+
+    /** Counts of JIT-compiled methods, from the same data as {@code jcmd <pid> Compiler.codelist}. */
+    static class CompilerSnapshot {
+        final long compiledMethods;
+        final long c2Methods;
+        final long compilationTimeMs;
+
+        private CompilerSnapshot(long compiledMethods, long c2Methods, long compilationTimeMs) {
+            this.compiledMethods = compiledMethods;
+            this.c2Methods = c2Methods;
+            this.compilationTimeMs = compilationTimeMs;
+        }
+
+        static CompilerSnapshot take() {
+            CompilationMXBean compiler = ManagementFactory.getCompilationMXBean();
+            long compilationTimeMs = compiler != null && compiler.isCompilationTimeMonitoringSupported()
+                ? compiler.getTotalCompilationTime() : -1;
+            String codelist;
+            try {
+                codelist = (String) ManagementFactory.getPlatformMBeanServer().invoke(
+                    new ObjectName("com.sun.management:type=DiagnosticCommand"), "compilerCodelist", null, null);
+            } catch (Exception e) {
+                // Not a HotSpot JVM, or the diagnostic MBean is disabled
+                return new CompilerSnapshot(-1, -1, compilationTimeMs);
+            }
+            long compiled = 0;
+            long c2 = 0;
+            // Each line: compile id, tier, state, address range, method
+            for (String line : codelist.split("\n")) {
+                String[] fields = line.trim().split("\\s+", 3);
+                if (fields.length < 3 || !Character.isDigit(fields[0].charAt(0))) {
+                    continue;
+                }
+                compiled++;
+                if ("4".equals(fields[1])) {
+                    c2++;
+                }
+            }
+            return new CompilerSnapshot(compiled, c2, compilationTimeMs);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.biovault.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Replaces the single spring.datasource pool with a primary pool plus one pool per
+ * read replica when biovault.datasource.routing.enabled=true.
+ */
+@Configuration
+@ConditionalOnProperty(name = "biovault.datasource.routing.enabled", havingValue = "true")
+@EnableConfigurationProperties(DataSourceRoutingProperties.class)
+public class DataSourceRoutingConfig {
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(DataSourceRoutingProperties properties) {
+        DataSource primary = pool(ReplicaRoutingDataSource.PRIMARY, properties.getPrimary());
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (int i = 0; i < properties.getReplicas().size(); i++) {
+            String name = "replica-" + i;
+            replicas.put(name, pool(name, properties.getReplicas().get(i)));
+        }
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, replicas, properties.getReplicaMaxLagMs());
+        routing.afterPropertiesSet();
+        routing.startLagMonitor(properties.getLagCheckIntervalMs());
+        return routing;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        // Defers taking a connection until the first statement, when the read-only flag is set
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+
+    private static HikariDataSource pool(String name, HikariConfig config) {
+        config.setPoolName("biovault-" + name);
+        return new HikariDataSource(config);
+    }
+}
@@ -0,0 +1,30 @@
+package com.biovault.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pools for the primary and the read replicas, bound from biovault.datasource.*.
+ * Each pool accepts the usual Hikari settings (jdbc-url, username, password,
+ * maximum-pool-size, connection-timeout, ...).
+ */
+@ConfigurationProperties("biovault.datasource")
+public class DataSourceRoutingProperties {
+
+    private HikariConfig primary = new HikariConfig();
+    private List<HikariConfig> replicas = new ArrayList<>();
+    private long replicaMaxLagMs = 1000;
+    private long lagCheckIntervalMs = 1000;
+
+    public HikariConfig getPrimary() { return primary; }
+    public void setPrimary(HikariConfig primary) { this.primary = primary; }
+    public List<HikariConfig> getReplicas() { return replicas; }
+    public void setReplicas(List<HikariConfig> replicas) { this.replicas = replicas; }
+    public long getReplicaMaxLagMs() { return replicaMaxLagMs; }
+    public void setReplicaMaxLagMs(long replicaMaxLagMs) { this.replicaMaxLagMs = replicaMaxLagMs; }
+    public long getLagCheckIntervalMs() { return lagCheckIntervalMs; }
+    public void setLagCheckIntervalMs(long lagCheckIntervalMs) { this.lagCheckIntervalMs = lagCheckIntervalMs; }
+}
@@ -0,0 +1,165 @@
+package com.biovault.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends connections for read-only transactions to a replica and everything else to
+ * the primary. A replica is only used while its measured replication lag is within
+ * the tolerance; when none qualifies, reads fall back to the primary.
+ *
+ * Must sit behind a LazyConnectionDataSourceProxy, otherwise the connection is taken
+ * before the transaction's read-only flag is visible.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    public static final String PRIMARY = "primary";
+
+    // Lag reported by a replica we couldn't reach
+    private static final long UNREACHABLE = Long.MAX_VALUE;
+
+    // NULL on a server that isn't in recovery, which we treat as zero lag
+    private static final String LAG_QUERY =
+        "SELECT CASE WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 "
+            + "ELSE EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000 END";
+
+    private final DataSource primary;
+    private final Map<String, DataSource> replicas;
+    private final String[] replicaNames;
+    private final long maxLagMs;
+
+    private final Map<String, Long> lagMs = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> routedCount = new ConcurrentHashMap<>();
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private ScheduledExecutorService lagMonitor;
+
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas, long maxLagMs) {
+        this.primary = primary;
+        this.replicas = new LinkedHashMap<>(replicas);
+        this.replicaNames = replicas.keySet().toArray(new String[0]);
+        this.maxLagMs = maxLagMs;
+
+        Map<Object, Object> targets = new HashMap<>(replicas);
+        targets.put(PRIMARY, primary);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+
+        routedCount.put(PRIMARY, new AtomicLong());
+        for (String name : replicaNames) {
+            routedCount.put(name, new AtomicLong());
+            // Not used until the first lag check says it is healthy
+            lagMs.put(name, UNREACHABLE);
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        String route = PRIMARY;
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            route = pickReplica();
+        }
+        routedCount.get(route).incrementAndGet();
+        return route;
+    }
+
+    private String pickReplica() {
+        // Round-robin, skipping replicas that are too far behind
+        int start = Math.floorMod(nextReplica.getAndIncrement(), Math.max(replicaNames.length, 1));
+        for (int i = 0; i < replicaNames.length; i++) {
+            String name = replicaNames[(start + i) % replicaNames.length];
+            if (lagMs.get(name) <= maxLagMs) {
+                return name;
+            }
+        }
+        return PRIMARY;
+    }
+
+    /** Measures the replication lag of every replica. */
+    public void refreshLag() {
+        for (Map.Entry<String, DataSource> replica : replicas.entrySet()) {
+            long lag;
+            try (Connection conn = replica.getValue().getConnection();
+                 Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(LAG_QUERY)) {
+                rs.next();
+                lag = (long) rs.getDouble(1);
+            } catch (SQLException e) {
+                System.err.println("Replica " + replica.getKey() + " unreachable: " + e.getMessage());
+                lag = UNREACHABLE;
+            }
+            lagMs.put(replica.getKey(), lag);
+        }
+    }
+
+    public void startLagMonitor(long intervalMs) {
+        refreshLag();
+        lagMonitor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "replica-lag-monitor");
+            t.setDaemon(true);
+            return t;
+        });
+        lagMonitor.scheduleWithFixedDelay(this::refreshLag, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** Pool and routing figures for each route, keyed by route name. */
+    public Map<String, Map<String, Object>> routeStats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        stats.put(PRIMARY, stats(PRIMARY, primary));
+        for (Map.Entry<String, DataSource> replica : replicas.entrySet()) {
+            Map<String, Object> replicaStats = stats(replica.getKey(), replica.getValue());
+            long lag = lagMs.get(replica.getKey());
+            replicaStats.put("lagMs", lag == UNREACHABLE ? null : lag);
+            replicaStats.put("healthy", lag <= maxLagMs);
+            stats.put(replica.getKey(), replicaStats);
+        }
+        return stats;
+    }
+
+    private Map<String, Object> stats(String route, DataSource dataSource) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("routed", routedCount.get(route).get());
+        if (dataSource instanceof HikariDataSource) {
+            HikariPoolMXBean pool = ((HikariDataSource) dataSource).getHikariPoolMXBean();
+            if (pool != null) {
+                stats.put("active", pool.getActiveConnections());
+                stats.put("idle", pool.getIdleConnections());
+                stats.put("waiting", pool.getThreadsAwaitingConnection());
+                stats.put("total", pool.getTotalConnections());
+            }
+        }
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        if (lagMonitor != null) {
+            lagMonitor.shutdownNow();
+        }
+        if (primary instanceof HikariDataSource) {
+            ((HikariDataSource) primary).close();
+        }
+        for (DataSource replica : replicas.values()) {
+            if (replica instanceof HikariDataSource) {
+                ((HikariDataSource) replica).close();
+            }
+        }
+    }
+}
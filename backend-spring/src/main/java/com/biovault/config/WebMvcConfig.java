@@ -0,0 +1,25 @@
+package com.biovault.config;
+
+import com.biovault.AdminAuthInterceptor;
+import com.biovault.TenantHeaderInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class WebMvcConfig implements WebMvcConfigurer {
+
+    @Autowired
+    private TenantHeaderInterceptor tenantHeaderInterceptor;
+
+    @Autowired
+    private AdminAuthInterceptor adminAuthInterceptor;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(tenantHeaderInterceptor).addPathPatterns("/api/**");
+        // Load balancers probe readiness without credentials
+        registry.addInterceptor(adminAuthInterceptor).addPathPatterns("/api/admin/**").excludePathPatterns("/api/admin/readiness");
+    }
+}
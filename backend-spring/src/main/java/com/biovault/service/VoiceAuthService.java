@@ -1,10 +1,12 @@
 package com.biovault.service;
 
+import com.biovault.AuthStageEvent;
 import com.microsoft.cognitiveservices.speech.*;
 import com.microsoft.cognitiveservices.speech.audio.AudioConfig;
 import com.microsoft.cognitiveservices.speech.audio.AudioInputStream;
 import com.microsoft.cognitiveservices.speech.audio.PushAudioInputStream;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile; // CHANGED: Import for file handling
 
@@ -13,6 +15,8 @@ import java.io.InputStream; // CHANGED: For handling file streams
 import java.time.Duration;
 import java.util.concurrent.Future;
 
+// Lazy so the Azure SDK (native libs + SpeechConfig) is only loaded on the first voice request
+@Lazy
 @Service
 public class VoiceAuthService {
 
@@ -33,7 +37,7 @@ public class VoiceAuthService {
     public String enrollTextIndependentProfile(MultipartFile audioFile) throws Exception {
         try (VoiceProfileClient client = new VoiceProfileClient(speechConfig)) {
             Future<VoiceProfile> profileFuture = client.createProfileAsync(VoiceProfileType.TextIndependent, "en-us");
-            VoiceProfile profile = profileFuture.get();
+            VoiceProfile profile = AuthStageEvent.time("enroll-voice", "voice", AuthStageEvent.DOWNSTREAM_CALL, profileFuture::get);
             System.out.println("Created Azure voice profile. ID: " + profile.getId());
 
             // This part is now simplified as we get a complete audio file
@@ -49,7 +53,7 @@ public class VoiceAuthService {
                 pushStream.close(); // Signal that no more data is coming
 
                 Future<EnrollmentResult> enrollFuture = client.enrollProfileAsync(profile, audioConfig);
-                EnrollmentResult result = enrollFuture.get();
+                EnrollmentResult result = AuthStageEvent.time("enroll-voice", "voice", AuthStageEvent.DOWNSTREAM_CALL, enrollFuture::get);
 
                 if (result.getReason() == ResultReason.EnrolledVoiceProfile) {
                     System.out.println("Enrollment complete!");
@@ -81,7 +85,7 @@ public class VoiceAuthService {
 
             SpeakerVerificationModel model = SpeakerVerificationModel.fromProfile(profile);
             Future<SpeakerRecognitionResult> resultFuture = recognizer.recognizeOnceAsync(model);
-            SpeakerRecognitionResult result = resultFuture.get();
+            SpeakerRecognitionResult result = AuthStageEvent.time("unlock", "voice", AuthStageEvent.DOWNSTREAM_CALL, resultFuture::get);
 
             if (result.getReason() == ResultReason.RecognizedSpeaker) {
                 System.out.println("VERIFIED: Welcome back! Confidence Score: " + result.getScore());
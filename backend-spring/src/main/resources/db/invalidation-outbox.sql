@@ -0,0 +1,15 @@
+-- Outbox for cross-node invalidation (InvalidationBus). Hibernate creates this table
+-- when ddl-auto=update; run this where the schema is managed outside the app (e.g. the
+-- startup profile, or after db/tenant-partitioning.sql).
+
+CREATE TABLE IF NOT EXISTS invalidation_outbox (
+    id          BIGSERIAL    PRIMARY KEY,
+    tenant_id   VARCHAR(64)  NOT NULL,
+    username    VARCHAR(255) NOT NULL,
+    kind        VARCHAR(32)  NOT NULL,
+    origin      VARCHAR(36)  NOT NULL,
+    created_at  TIMESTAMP    NOT NULL
+);
+
+-- Replay after a reconnect and pruning both range-scan on created_at
+CREATE INDEX IF NOT EXISTS invalidation_outbox_created_at ON invalidation_outbox (created_at);
@@ -0,0 +1,62 @@
+-- Declarative partitioning of the users table by tenant (PostgreSQL 11+).
+--
+-- Large tenants get a dedicated LIST partition, so their indexes are theirs alone.
+-- Every other tenant falls into the DEFAULT partition, which is hash-partitioned
+-- on tenant_id to keep each of its indexes small.
+--
+-- Run once with the application stopped, then start the backend with
+-- spring.jpa.hibernate.ddl-auto=none (or validate); Hibernate can't create partitions.
+
+BEGIN;
+
+CREATE TABLE users_partitioned (
+    id          BIGSERIAL,
+    tenant_id   VARCHAR(64)  NOT NULL DEFAULT 'default',
+    name        VARCHAR(255),
+    email       VARCHAR(255) NOT NULL,
+    username    VARCHAR(255) NOT NULL,
+    otp         VARCHAR(255),
+    otp_expiry  TIMESTAMP,
+    voice_embedding BYTEA,
+    -- Primary and unique keys on a partitioned table must include the partition key
+    PRIMARY KEY (tenant_id, id),
+    UNIQUE (tenant_id, username),
+    UNIQUE (tenant_id, email)
+) PARTITION BY LIST (tenant_id);
+
+-- The admin listing and export page across all tenants by id (id > ? ORDER BY id LIMIT n).
+-- The keys above all lead with tenant_id, so without this every page would sort every
+-- partition; with it each page is a merge of short index scans, however deep it is.
+CREATE INDEX users_partitioned_id_idx ON users_partitioned (id);
+
+-- One partition per large tenant; add more with the same pattern
+CREATE TABLE users_tenant_default PARTITION OF users_partitioned FOR VALUES IN ('default');
+
+CREATE TABLE users_shared PARTITION OF users_partitioned DEFAULT PARTITION BY HASH (tenant_id);
+CREATE TABLE users_shared_0 PARTITION OF users_shared FOR VALUES WITH (MODULUS 8, REMAINDER 0);
+CREATE TABLE users_shared_1 PARTITION OF users_shared FOR VALUES WITH (MODULUS 8, REMAINDER 1);
+CREATE TABLE users_shared_2 PARTITION OF users_shared FOR VALUES WITH (MODULUS 8, REMAINDER 2);
+CREATE TABLE users_shared_3 PARTITION OF users_shared FOR VALUES WITH (MODULUS 8, REMAINDER 3);
+CREATE TABLE users_shared_4 PARTITION OF users_shared FOR VALUES WITH (MODULUS 8, REMAINDER 4);
+CREATE TABLE users_shared_5 PARTITION OF users_shared FOR VALUES WITH (MODULUS 8, REMAINDER 5);
+CREATE TABLE users_shared_6 PARTITION OF users_shared FOR VALUES WITH (MODULUS 8, REMAINDER 6);
+CREATE TABLE users_shared_7 PARTITION OF users_shared FOR VALUES WITH (MODULUS 8, REMAINDER 7);
+
+-- Copy existing users (all of which belong to the default tenant) and keep ids stable
+INSERT INTO users_partitioned (id, tenant_id, name, email, username, otp, otp_expiry)
+SELECT id, 'default', name, email, username, otp, otp_expiry FROM users;
+SELECT setval(pg_get_serial_sequence('users_partitioned', 'id'), COALESCE(MAX(id), 1)) FROM users_partitioned;
+
+ALTER TABLE users RENAME TO users_unpartitioned;
+ALTER TABLE users_partitioned RENAME TO users;
+
+COMMIT;
+
+-- Moving a tenant that has outgrown the shared partitions into its own partition:
+--
+-- BEGIN;
+-- CREATE TABLE users_tenant_acme (LIKE users INCLUDING DEFAULTS INCLUDING CONSTRAINTS);
+-- INSERT INTO users_tenant_acme SELECT * FROM users WHERE tenant_id = 'acme';
+-- DELETE FROM users WHERE tenant_id = 'acme';
+-- ALTER TABLE users ATTACH PARTITION users_tenant_acme FOR VALUES IN ('acme');
+-- COMMIT;
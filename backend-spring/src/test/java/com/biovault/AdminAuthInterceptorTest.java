@@ -0,0 +1,56 @@
+package com.biovault;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AdminAuthInterceptorTest {
+
+    private final AdminAuthInterceptor interceptor =
+        new AdminAuthInterceptor(new ObjectMapper(), "operator-secret", "acme:acme-secret");
+
+    @Test
+    public void testOperatorTokenReachesEverything() throws Exception {
+        MockHttpServletRequest request = request("/api/admin/profiling/snapshot", "operator-secret");
+        assertThat(interceptor.preHandle(request, new MockHttpServletResponse(), null)).isTrue();
+        assertThat(request.getAttribute(AdminAuthInterceptor.ADMIN_TENANT)).isNull();
+    }
+
+    @Test
+    public void testTenantTokenOnlyListsItsOwnUsers() throws Exception {
+        MockHttpServletRequest export = request("/api/admin/users/export", "acme-secret");
+        assertThat(interceptor.preHandle(export, new MockHttpServletResponse(), null)).isTrue();
+        assertThat(export.getAttribute(AdminAuthInterceptor.ADMIN_TENANT)).isEqualTo("acme");
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertThat(interceptor.preHandle(request("/api/admin/reenrollment/start", "acme-secret"), response, null)).isFalse();
+        assertThat(response.getStatus()).isEqualTo(403);
+    }
+
+    @Test
+    public void testMissingOrWrongTokenIsRefused() throws Exception {
+        MockHttpServletResponse missing = new MockHttpServletResponse();
+        assertThat(interceptor.preHandle(request("/api/admin/users", null), missing, null)).isFalse();
+        assertThat(missing.getStatus()).isEqualTo(401);
+
+        MockHttpServletResponse wrong = new MockHttpServletResponse();
+        assertThat(interceptor.preHandle(request("/api/admin/users", "operator-secret2"), wrong, null)).isFalse();
+        assertThat(wrong.getStatus()).isEqualTo(401);
+        assertThat(wrong.getContentAsString()).contains("\"success\":false");
+
+        // Nothing configured: even an empty bearer token gets nowhere
+        AdminAuthInterceptor unconfigured = new AdminAuthInterceptor(new ObjectMapper(), "");
+        assertThat(unconfigured.preHandle(request("/api/admin/bulkheads", ""), new MockHttpServletResponse(), null)).isFalse();
+    }
+
+    private static MockHttpServletRequest request(String path, String token) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        if (token != null) {
+            request.addHeader("Authorization", "Bearer " + token);
+        }
+        return request;
+    }
+}
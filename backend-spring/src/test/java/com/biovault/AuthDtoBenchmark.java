@@ -0,0 +1,117 @@
+package com.biovault;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bytes allocated per unlock request in the JSON layer: the old mutable beans through
+ * reflective Jackson, the record DTOs through Blackbird, and the pre-encoded rejection.
+ *
+ * Run from backend-spring after {@code mvn test-compile}:
+ * <pre>
+ * mvn dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp "target/test-classes:target/classes:$(cat target/cp.txt)" com.biovault.AuthDtoBenchmark
+ * </pre>
+ * Compare the {@code gc.alloc.rate.norm} rows (bytes per operation).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuthDtoBenchmark {
+
+    private static final byte[] UNLOCK_REQUEST = ("{\"username\":\"alice\",\"method\":\"face\","
+        + "\"proof\":\"iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAADUlEQVR42mNkYPhfDwAChwGA60e6kgAAAABJRU5ErkJggg==\"}")
+        .getBytes(StandardCharsets.UTF_8);
+
+    private ObjectMapper reflective;
+    private ObjectMapper blackbird;
+    private PreEncodedResponses preEncoded;
+
+    @Setup
+    public void setUp() throws Exception {
+        reflective = new ObjectMapper();
+        blackbird = new ObjectMapper().registerModule(new BlackbirdModule());
+        preEncoded = new PreEncodedResponses(blackbird);
+    }
+
+    /** Before: bind a bean through setters, then serialise a fresh rejection. */
+    @Benchmark
+    public void legacyBeansRejected(Blackhole blackhole) throws Exception {
+        blackhole.consume(reflective.readValue(UNLOCK_REQUEST, LegacyUnlockRequest.class));
+        blackhole.consume(reflective.writeValueAsBytes(new LegacyUnlockResponse(false, 0.0, null, null)));
+    }
+
+    /** After, success path: records through Blackbird. */
+    @Benchmark
+    public byte[] recordsAccepted() throws Exception {
+        UserController.UnlockRequest request = blackbird.readValue(UNLOCK_REQUEST, UserController.UnlockRequest.class);
+        return blackbird.writeValueAsBytes(new UserController.UnlockResponse(true, 0.93, "token_" + request.username().length()));
+    }
+
+    /** After, rejection path: the body is already encoded. */
+    @Benchmark
+    public void recordsRejected(Blackhole blackhole) throws Exception {
+        blackhole.consume(blackbird.readValue(UNLOCK_REQUEST, UserController.UnlockRequest.class));
+        blackhole.consume(preEncoded.unlockUnauthorized());
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+            .include(AuthDtoBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build();
+        new Runner(options).run();
+    }
+
+    // The DTO shapes UserController used before the move to records
+
+    public static class LegacyUnlockRequest {
+        private String username;
+        private String method;
+        private String proof;
+        public String getUsername() { return username; }
+        public void setUsername(String username) { this.username = username; }
+        public String getMethod() { return method; }
+        public void setMethod(String method) { this.method = method; }
+        public String getProof() { return proof; }
+        public void setProof(String proof) { this.proof = proof; }
+    }
+
+    public static class LegacyUnlockResponse {
+        private boolean success;
+        private double confidence;
+        private String token;
+        private String message;
+        public LegacyUnlockResponse(boolean success, double confidence, String token, String message) {
+            this.success = success;
+            this.confidence = confidence;
+            this.token = token;
+            this.message = message;
+        }
+        public boolean isSuccess() { return success; }
+        public double getConfidence() { return confidence; }
+        public String getToken() { return token; }
+        public String getMessage() { return message; }
+    }
+}
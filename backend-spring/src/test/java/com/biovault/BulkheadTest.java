@@ -0,0 +1,108 @@
+package com.biovault;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class BulkheadTest {
+
+    private final Bulkheads bulkheads = new Bulkheads(new MockEnvironment()
+        .withProperty("bulkhead.voice.max-concurrent", "2")
+        .withProperty("bulkhead.voice.queue-capacity", "2")
+        .withProperty("bulkhead.voice.timeout-ms", "500")
+        .withProperty("bulkhead.face.max-concurrent", "2"));
+
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+
+    @AfterEach
+    public void tearDown() {
+        callers.shutdownNow();
+        bulkheads.shutdown();
+    }
+
+    @Test
+    public void testHungVoiceBackendLeavesFaceAndOtpUnaffected() throws Exception {
+        Bulkhead voice = bulkheads.get(Bulkheads.VOICE);
+        CountDownLatch never = new CountDownLatch(1);
+
+        // Fill the voice bulkhead (2 running, 2 queued) with calls to a backend that never answers
+        List<Future<?>> hung = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            hung.add(callers.submit(() -> voice.call(() -> {
+                never.await();
+                return true;
+            })));
+        }
+        waitFor(() -> voice.stats().get("queued").equals(2));
+
+        // Further voice requests are turned away straight away instead of piling up
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> voice.call(() -> true)).isInstanceOf(Bulkhead.BulkheadFullException.class);
+        assertThat(millisSince(start)).isLessThan(100);
+
+        // Meanwhile OTP and face calls run at their normal speed
+        for (int i = 0; i < 20; i++) {
+            start = System.nanoTime();
+            assertThat(bulkheads.get(Bulkheads.OTP).call(() -> {
+                Thread.sleep(5);
+                return 0;
+            })).isEqualTo(0);
+            assertThat(millisSince(start)).isLessThan(100);
+
+            start = System.nanoTime();
+            assertThat(bulkheads.get(Bulkheads.FACE).guard(() -> Mono.just(true).delayElement(Duration.ofMillis(5))).block())
+                .isTrue();
+            assertThat(millisSince(start)).isLessThan(100);
+        }
+
+        // The hung voice callers get their timeout rather than waiting forever
+        for (Future<?> call : hung) {
+            assertThatThrownBy(() -> call.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(Bulkhead.BulkheadTimeoutException.class);
+        }
+        assertThat(voice.stats().get("rejected")).isEqualTo(1L);
+        assertThat(voice.stats().get("timedOut")).isEqualTo(4L);
+    }
+
+    @Test
+    public void testGuardRejectsOverLimitAndReleasesPermits() {
+        Bulkhead face = bulkheads.get(Bulkheads.FACE);
+        Mono<Boolean> slow = face.guard(() -> Mono.just(true).delayElement(Duration.ofMillis(200)));
+        Mono<Boolean> first = slow.cache();
+        first.subscribe();
+        Mono<Boolean> second = slow.cache();
+        second.subscribe();
+
+        assertThatThrownBy(() -> face.guard(() -> Mono.just(true)).block())
+            .isInstanceOf(Bulkhead.BulkheadFullException.class);
+        assertThat(first.block()).isTrue();
+        assertThat(second.block()).isTrue();
+        assertThat(face.guard(() -> Mono.just(true)).block()).isTrue();
+    }
+
+    private static long millisSince(long start) {
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(condition.getAsBoolean()).isTrue();
+    }
+}
@@ -0,0 +1,146 @@
+package com.biovault;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class EmbeddingStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testDeltaLogIsReplayedOnReopen() throws IOException {
+        EmbeddingStore store = open();
+        store.enroll("alice", new float[] { 1, 2, 3 });
+        store.enroll("bob", new float[] { 4, 5, 6 });
+        store.delete("bob");
+        store.close();
+
+        EmbeddingStore reopened = open();
+        assertThat(reopened.get("alice")).containsExactly(1, 2, 3);
+        assertThat(reopened.get("bob")).isNull();
+        assertThat(reopened.size()).isEqualTo(1);
+        reopened.close();
+    }
+
+    @Test
+    public void testCompactionFoldsLogIntoSnapshot() throws IOException {
+        EmbeddingStore store = open();
+        store.enroll("alice", new float[] { 1, 2, 3 });
+        store.enroll("bob", new float[] { 4, 5, 6 });
+        store.compact();
+        store.delete("alice");
+        store.enroll("carol", new float[] { 7, 8, 9 });
+        assertThat(store.pendingDeltaRecords()).isEqualTo(2);
+        store.compact();
+        store.close();
+
+        assertThat(Files.size(dir.resolve(EmbeddingStore.DELTA_FILE))).isEqualTo(EmbeddingStore.DELTA_HEADER_BYTES);
+        EmbeddingSnapshot snapshot = EmbeddingSnapshot.open(dir.resolve(EmbeddingStore.SNAPSHOT_FILE));
+        assertThat(snapshot.size()).isEqualTo(2);
+        assertThat(snapshot.get("alice")).isNull();
+        assertThat(snapshot.get("carol")).containsExactly(7, 8, 9);
+    }
+
+    @Test
+    public void testTornDeltaRecordIsDropped() throws IOException {
+        EmbeddingStore store = open();
+        store.enroll("alice", new float[] { 1, 2, 3 });
+        store.close();
+        try (FileChannel log = FileChannel.open(dir.resolve(EmbeddingStore.DELTA_FILE), StandardOpenOption.APPEND)) {
+            log.write(ByteBuffer.wrap(new byte[] { 1, 5, 0, 'b', 'o' }));
+        }
+
+        EmbeddingStore reopened = open();
+        assertThat(reopened.get("alice")).containsExactly(1, 2, 3);
+        reopened.enroll("bob", new float[] { 4, 5, 6 });
+        reopened.close();
+
+        EmbeddingStore again = open();
+        assertThat(again.get("bob")).containsExactly(4, 5, 6);
+        again.close();
+    }
+
+    @Test
+    public void testStoredDimensionWinsOverConfiguration() throws IOException {
+        EmbeddingStore store = open();
+        store.enroll("alice", new float[] { 1, 2, 3 });
+        store.close();
+        long logSize = Files.size(dir.resolve(EmbeddingStore.DELTA_FILE));
+
+        EmbeddingStore reopened = new EmbeddingStore(dir.toString(), 4);
+        reopened.open();
+        assertThat(reopened.dimension()).isEqualTo(3);
+        assertThat(Files.size(dir.resolve(EmbeddingStore.DELTA_FILE))).isEqualTo(logSize);
+        assertThat(reopened.get("alice")).containsExactly(1, 2, 3);
+        assertThatThrownBy(() -> reopened.delete("x".repeat(65536))).isInstanceOf(IllegalArgumentException.class);
+        reopened.close();
+    }
+
+    @Test
+    public void testAdoptedDimensionSurvivesRestart() throws IOException {
+        EmbeddingStore store = open();
+        store.enroll("alice", new float[] { 1, 2, 3 });
+        Path source = dir.resolve("v2.snapshot");
+        EmbeddingSnapshot.write(source, 2, Map.of("alice", new float[] { 7, 8 }));
+        store.adopt(source);
+        store.enroll("bob", new float[] { 9, 9 });
+        store.close();
+
+        // Still configured for the old model
+        EmbeddingStore reopened = open();
+        assertThat(reopened.dimension()).isEqualTo(2);
+        assertThat(reopened.get("alice")).containsExactly(7, 8);
+        assertThat(reopened.get("bob")).containsExactly(9, 9);
+        reopened.close();
+    }
+
+    @Test
+    public void testFailedSwitchKeepsTheOldStore() throws IOException {
+        EmbeddingStore store = open();
+        store.enroll("alice", new float[] { 1, 2, 3 });
+        Path source = dir.resolve("v2.snapshot");
+        EmbeddingSnapshot.write(source, 2, Map.of("alice", new float[] { 7, 8 }));
+        // A directory where the snapshot should be makes the move fail
+        Files.createDirectories(dir.resolve(EmbeddingStore.SNAPSHOT_FILE).resolve("blocker"));
+
+        assertThatThrownBy(() -> store.adopt(source)).isInstanceOf(IOException.class);
+        assertThat(store.dimension()).isEqualTo(3);
+        store.close();
+        Files.delete(dir.resolve(EmbeddingStore.SNAPSHOT_FILE).resolve("blocker"));
+        Files.delete(dir.resolve(EmbeddingStore.SNAPSHOT_FILE));
+
+        EmbeddingStore reopened = open();
+        assertThat(reopened.dimension()).isEqualTo(3);
+        assertThat(reopened.get("alice")).containsExactly(1, 2, 3);
+        reopened.close();
+    }
+
+    @Test
+    public void testCorruptSnapshotIsRejected() throws IOException {
+        Path file = dir.resolve("corrupt.snapshot");
+        EmbeddingSnapshot.write(file, 2, Map.of("alice", new float[] { 1, 2 }));
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 1] ^= 0x1;
+        Files.write(file, bytes);
+
+        assertThatThrownBy(() -> EmbeddingSnapshot.open(file)).hasMessageContaining("checksum");
+    }
+
+    private EmbeddingStore open() throws IOException {
+        EmbeddingStore store = new EmbeddingStore(dir.toString(), 3);
+        store.open();
+        return store;
+    }
+}
@@ -0,0 +1,77 @@
+package com.biovault;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class FaceImageIngestTest {
+
+    private final FaceImageIngest ingest = new FaceImageIngest(1024 * 1024, 64, 4000, 1_000_000, 200);
+
+    @BeforeEach
+    public void start() {
+        ingest.start();
+    }
+
+    @AfterEach
+    public void stop() {
+        ingest.stop();
+    }
+
+    @Test
+    public void testReadsDimensionsFromHeaders() throws IOException {
+        FaceImageIngest.PreparedImage jpeg = ingest.inspect(image("jpeg", 150, 100));
+        assertThat(jpeg.getWidth()).isEqualTo(150);
+        assertThat(jpeg.getHeight()).isEqualTo(100);
+
+        FaceImageIngest.PreparedImage png = ingest.inspect(image("png", 120, 180));
+        assertThat(png.getWidth()).isEqualTo(120);
+        assertThat(png.getHeight()).isEqualTo(180);
+    }
+
+    @Test
+    public void testRejectsInvalidInput() throws IOException {
+        assertThatThrownBy(() -> ingest.inspect(null)).isInstanceOf(FaceImageIngest.InvalidImageException.class);
+        assertThatThrownBy(() -> ingest.inspect(Base64.getEncoder().encodeToString("GIF89a not a face at all".getBytes())))
+            .hasMessageContaining("JPEG and PNG");
+        assertThatThrownBy(() -> ingest.inspect("!!!!not base64!!!!"))
+            .isInstanceOf(FaceImageIngest.InvalidImageException.class);
+        assertThatThrownBy(() -> ingest.inspect(image("png", 32, 32)))
+            .hasMessageContaining("smaller");
+        // Within the side limit and only a few KB compressed, but too many pixels to decode
+        assertThatThrownBy(() -> ingest.inspect(image("png", 1200, 1000)))
+            .hasMessageContaining("pixels");
+
+        // A JPEG signature followed by garbage has no frame header
+        byte[] truncated = { (byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0, 0, 4, 0, 0, 1, 2, 3, 4, 5, 6, 7, 8 };
+        assertThatThrownBy(() -> ingest.inspect(Base64.getEncoder().encodeToString(truncated)))
+            .hasMessageContaining("corrupt");
+    }
+
+    @Test
+    public void testDownscalesOversizedImages() throws IOException {
+        String small = image("jpeg", 150, 100);
+        assertThat(ingest.prepare(small).block().getBase64()).isSameAs(small);
+
+        FaceImageIngest.PreparedImage scaled = ingest.prepare(image("png", 800, 400)).block();
+        assertThat(scaled.getWidth()).isEqualTo(200);
+        assertThat(scaled.getHeight()).isEqualTo(100);
+        BufferedImage decoded = ImageIO.read(new java.io.ByteArrayInputStream(scaled.getBytes()));
+        assertThat(decoded.getWidth()).isEqualTo(200);
+    }
+
+    private static String image(String format, int width, int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), format, out);
+        return Base64.getEncoder().encodeToString(out.toByteArray());
+    }
+}
@@ -0,0 +1,124 @@
+package com.biovault;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Compares the JSON and binary face-auth protocols: bytes on the wire, throughput and
+ * CPU time per request for encoding the request and decoding the response on the
+ * backend side. Both start from the Base64 proof the client sends to /auth/unlock. With a face-auth URL it also times live round-trips to both endpoints.
+ *
+ * <pre>
+ * java -cp "target/test-classes:target/classes:target/lib/*" com.biovault.FaceWireBenchmark [image.jpg] [username http://localhost:5001]
+ * </pre>
+ */
+public class FaceWireBenchmark {
+
+    private static final int WARMUP = 20_000;
+    private static final int ITERATIONS = 50_000;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws Exception {
+        byte[] image;
+        if (args.length > 0) {
+            image = Files.readAllBytes(Paths.get(args[0]));
+        } else {
+            // A typical phone selfie after JPEG compression
+            image = new byte[200 * 1024];
+            new Random(42).nextBytes(image);
+        }
+        String username = args.length > 1 ? args[1] : "alice";
+        String proof = Base64.getEncoder().encodeToString(image);
+
+        byte[] jsonResponse = MAPPER.writeValueAsBytes(Map.of("status", "success", "message", "Face verified!", "distance", 0.31));
+        byte[] binaryResponse = binaryResponse(0.31f);
+
+        System.out.printf("image=%d bytes%n", image.length);
+        System.out.printf("json   request=%d bytes  response=%d bytes%n", jsonRequest(username, proof).length, jsonResponse.length);
+        System.out.printf("binary request=%d bytes  response=%d bytes%n",
+            FaceWireCodec.encodeImageRequest(username, image).length, binaryResponse.length);
+
+        measure("json", () -> {
+            byte[] request = jsonRequest(username, proof);
+            Map<?, ?> body = MAPPER.readValue(jsonResponse, Map.class);
+            return request.length + FaceWireCodec.FaceVerification
+                .fromDistance("success".equals(body.get("status")), (Number) body.get("distance")).getConfidence();
+        });
+        measure("binary", () -> {
+            byte[] request = FaceWireCodec.encodeImageRequest(username, Base64.getDecoder().decode(proof));
+            return request.length + FaceWireCodec.decodeResponse(binaryResponse).getConfidence();
+        });
+
+        if (args.length > 2) {
+            live(args[2], username, proof);
+        }
+    }
+
+    private static byte[] jsonRequest(String username, String proof) throws Exception {
+        return MAPPER.writeValueAsBytes(Map.of("username", username, "faceEmbedding", proof));
+    }
+
+    private static byte[] binaryResponse(float distance) {
+        byte[] message = new byte[0];
+        return ByteBuffer.allocate(12 + message.length)
+            .put(FaceWireCodec.VERSION).put(FaceWireCodec.STATUS_MATCH)
+            .putFloat(distance).putFloat(1 - distance).putShort((short) message.length).put(message)
+            .array();
+    }
+
+    private static void measure(String name, Op op) throws Exception {
+        double sink = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            sink += op.run();
+        }
+        long cpuStart = THREADS.getCurrentThreadCpuTime();
+        long wallStart = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += op.run();
+        }
+        long wall = System.nanoTime() - wallStart;
+        long cpu = THREADS.getCurrentThreadCpuTime() - cpuStart;
+        System.out.printf("%-6s %,10.0f req/s  %,8d ns cpu/req  (sink %.0f)%n",
+            name, ITERATIONS / (wall / 1e9), cpu / ITERATIONS, sink);
+    }
+
+    private static void live(String baseUrl, String username, String proof) throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest json = HttpRequest.newBuilder(URI.create(baseUrl + "/verify"))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofByteArray(jsonRequest(username, proof))).build();
+        HttpRequest binary = HttpRequest.newBuilder(URI.create(baseUrl + "/verify-bin"))
+            .header("Content-Type", FaceWireCodec.CONTENT_TYPE)
+            .POST(HttpRequest.BodyPublishers.ofByteArray(FaceWireCodec.encodeImageRequest(username, Base64.getDecoder().decode(proof)))).build();
+        for (Map.Entry<String, HttpRequest> entry : Map.of("json", json, "binary", binary).entrySet()) {
+            int rounds = 20;
+            long start = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                HttpResponse<byte[]> response = client.send(entry.getValue(), HttpResponse.BodyHandlers.ofByteArray());
+                if (i == 0) {
+                    System.out.printf("%-6s live status %d, %s%n", entry.getKey(), response.statusCode(),
+                        entry.getKey().equals("json") ? new String(response.body(), StandardCharsets.UTF_8) : "binary frame");
+                }
+            }
+            System.out.printf("%-6s live %.1f ms/round-trip%n", entry.getKey(), (System.nanoTime() - start) / 1e6 / rounds);
+        }
+    }
+
+    private interface Op {
+        double run() throws Exception;
+    }
+}
@@ -0,0 +1,53 @@
+package com.biovault;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class FaceWireCodecTest {
+
+    @Test
+    public void testImageRequestLayout() {
+        byte[] image = { 1, 2, 3 };
+        ByteBuffer frame = ByteBuffer.wrap(FaceWireCodec.encodeImageRequest("bob", image));
+
+        assertThat(frame.get()).isEqualTo(FaceWireCodec.VERSION);
+        assertThat(frame.get()).isEqualTo(FaceWireCodec.KIND_IMAGE);
+        byte[] name = new byte[frame.getShort()];
+        frame.get(name);
+        assertThat(new String(name, StandardCharsets.UTF_8)).isEqualTo("bob");
+        assertThat(frame.getInt()).isEqualTo(3);
+        assertThat(frame.get()).isEqualTo((byte) 1);
+        assertThat(frame.remaining()).isEqualTo(2);
+    }
+
+    @Test
+    public void testEmbeddingRequestCarriesFloats() {
+        ByteBuffer frame = ByteBuffer.wrap(FaceWireCodec.encodeEmbeddingRequest("bob", new float[] { 0.5f, -1.25f }));
+        frame.position(2 + 2 + 3);
+        assertThat(frame.getInt()).isEqualTo(8);
+        assertThat(frame.getFloat()).isEqualTo(0.5f);
+        assertThat(frame.getFloat()).isEqualTo(-1.25f);
+    }
+
+    @Test
+    public void testDecodeResponse() {
+        FaceWireCodec.FaceVerification result = FaceWireCodec.decodeResponse(response(FaceWireCodec.STATUS_MATCH, "", 0.25f));
+        assertThat(result.isMatch()).isTrue();
+        assertThat(result.getDistance()).isEqualTo(0.25);
+        assertThat(result.getConfidence()).isEqualTo(0.75);
+
+        assertThatThrownBy(() -> FaceWireCodec.decodeResponse(response(FaceWireCodec.STATUS_ERROR, "no face", Float.NaN)))
+            .hasMessageContaining("no face");
+    }
+
+    private static byte[] response(byte status, String message, float distance) {
+        byte[] text = message.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(12 + text.length).put(FaceWireCodec.VERSION).put(status)
+            .putFloat(distance).putFloat(1 - distance).putShort((short) text.length).put(text).array();
+    }
+}
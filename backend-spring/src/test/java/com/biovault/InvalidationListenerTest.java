@@ -0,0 +1,73 @@
+package com.biovault;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InvalidationListenerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final TenantUserCache userCache = new TenantUserCache(100, 60);
+    private final UnlockTicketService tickets = new UnlockTicketService(60, 300, 10, now::get);
+    private final InvalidationBus bus = new InvalidationBus();
+    private final InvalidationListener listener = new InvalidationListener(userCache, tickets, bus, objectMapper, 100);
+
+    @Test
+    public void testBurstForOneUserIsAppliedOnce() throws Exception {
+        cache("default", "alice");
+        cache("default", "bob");
+        String ticket = tickets.issue("default", "alice", "phone-1", "face", 0.9);
+
+        int applied = listener.handle(List.of(
+            notice(1, "node-b", InvalidationEvent.USER_UPDATED, "default", "alice"),
+            notice(2, "node-b", InvalidationEvent.CREDENTIALS_CHANGED, "default", "alice"),
+            notice(3, "node-c", InvalidationEvent.USER_UPDATED, "default", "alice")));
+
+        assertThat(applied).isEqualTo(1);
+        assertThat(userCache.get("default", "alice")).isNull();
+        assertThat(userCache.get("default", "bob")).isNotNull();
+        // The credential change wasn't lost to the later plain update
+        assertThat(tickets.redeem(ticket, "default", "alice", "phone-1")).isNull();
+    }
+
+    @Test
+    public void testOwnAndMalformedNotificationsAreIgnored() throws Exception {
+        cache("acme", "alice");
+
+        int applied = listener.handle(List.of(
+            notice(1, bus.getNodeId(), InvalidationEvent.USER_UPDATED, "acme", "alice"),
+            "not json"));
+
+        assertThat(applied).isZero();
+        // This node invalidated its own cache when it made the change
+        assertThat(userCache.get("acme", "alice")).isNotNull();
+    }
+
+    @Test
+    public void testPlainUpdateKeepsTickets() throws Exception {
+        cache("default", "alice");
+        String ticket = tickets.issue("default", "alice", "phone-1", "face", 0.9);
+
+        listener.handle(List.of(notice(1, "node-b", InvalidationEvent.USER_UPDATED, "default", "alice")));
+
+        assertThat(userCache.get("default", "alice")).isNull();
+        assertThat(tickets.redeem(ticket, "default", "alice", "phone-1")).isNotNull();
+    }
+
+    private void cache(String tenantId, String username) {
+        User user = new User();
+        user.setTenantId(tenantId);
+        user.setUsername(username);
+        userCache.put(tenantId, user);
+    }
+
+    private String notice(long id, String origin, String kind, String tenantId, String username) throws Exception {
+        return objectMapper.writeValueAsString(
+            new InvalidationBus.Notice(id, origin, kind, tenantId, username, System.currentTimeMillis()));
+    }
+}
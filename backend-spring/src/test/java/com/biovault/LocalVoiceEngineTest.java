@@ -0,0 +1,56 @@
+package com.biovault;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class LocalVoiceEngineTest {
+
+    private final LocalVoiceEngine engine = new LocalVoiceEngine(0.9, 0.005, 1.0, 30);
+
+    @Test
+    public void testSameSpeakerScoresAboveOtherSpeaker() throws Exception {
+        float[] enrolled = engine.embed(new ByteArrayInputStream(VoiceClips.wav(VoiceClips.LOW, 4, 16000, 1)));
+        assertThat(enrolled).hasSize(LocalVoiceEngine.DIMENSION);
+
+        VoiceEngine.Verification same = engine.verify(new ByteArrayInputStream(VoiceClips.wav(VoiceClips.LOW, 3, 16000, 2)), enrolled);
+        VoiceEngine.Verification other = engine.verify(new ByteArrayInputStream(VoiceClips.wav(VoiceClips.HIGH, 3, 16000, 3)), enrolled);
+
+        assertThat(same.score()).isGreaterThan(other.score());
+        assertThat(same.match()).isTrue();
+        assertThat(other.match()).isFalse();
+    }
+
+    @Test
+    public void testRejectsUnusableAudio() {
+        assertThatThrownBy(() -> engine.embed(new ByteArrayInputStream("not a wav file at all".getBytes())))
+            .isInstanceOf(VoiceEngine.InvalidAudioException.class);
+        assertThatThrownBy(() -> engine.embed(new ByteArrayInputStream(VoiceClips.silence(3, 16000))))
+            .hasMessageContaining("Not enough speech");
+
+        // The channel count sizes the read buffer, so a crafted header must not get through
+        byte[] manyChannels = VoiceClips.wav(VoiceClips.LOW, 1, 16000, 1);
+        manyChannels[22] = (byte) 0xFF;
+        manyChannels[23] = (byte) 0xFF;
+        assertThatThrownBy(() -> engine.embed(new ByteArrayInputStream(manyChannels)))
+            .hasMessageContaining("mono or stereo");
+    }
+
+    @Test
+    public void testDotMatchesNaiveSum() {
+        Random random = new Random(7);
+        float[] a = new float[LocalVoiceEngine.DIMENSION + 3];
+        float[] b = new float[a.length];
+        double expected = 0;
+        for (int i = 0; i < a.length; i++) {
+            a[i] = random.nextFloat();
+            b[i] = random.nextFloat();
+            expected += a[i] * b[i];
+        }
+        assertThat((double) LocalVoiceEngine.dot(a, b)).isCloseTo(expected, org.assertj.core.data.Offset.offset(1e-4));
+    }
+}
@@ -0,0 +1,58 @@
+package com.biovault;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ProfilingServiceTest {
+
+    private final ProfilingService profiling = new ProfilingService(60, 60, 10);
+
+    @AfterEach
+    public void tearDown() {
+        profiling.closeRecording();
+    }
+
+    @Test
+    public void testRecordingCapturesAuthStages() throws Exception {
+        profiling.start("default", 30);
+        assertThatThrownBy(() -> profiling.start("default", 30)).isInstanceOf(IllegalStateException.class);
+
+        AuthStageEvent.time("login", "otp", AuthStageEvent.DB_LOOKUP, () -> "user");
+        assertThatThrownBy(() -> AuthStageEvent.time("login", "otp", AuthStageEvent.TOKEN_ISSUE, () -> {
+            throw new IllegalStateException("boom");
+        }));
+        AuthStageEvent.timeMono("unlock", "face", AuthStageEvent.DOWNSTREAM_CALL, () -> Mono.just(1)).block();
+
+        Path file = profiling.stop();
+        try {
+            List<RecordedEvent> stages = RecordingFile.readAllEvents(file).stream()
+                .filter(e -> e.getEventType().getName().equals("com.biovault.AuthStage"))
+                .collect(Collectors.toList());
+            assertThat(stages).extracting(e -> e.getString("stage"))
+                .containsExactly(AuthStageEvent.DB_LOOKUP, AuthStageEvent.TOKEN_ISSUE, AuthStageEvent.DOWNSTREAM_CALL);
+            assertThat(stages).extracting(e -> e.getString("outcome")).containsExactly("ok", "error", "ok");
+            assertThat(stages.get(2).getString("factor")).isEqualTo("face");
+            assertThat(RecordingFile.readAllEvents(file)).extracting(e -> e.getEventType().getName())
+                .doesNotContainAnyElementsOf(ProfilingService.SENSITIVE_EVENTS);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+        assertThat(profiling.status().get("state")).isEqualTo("NONE");
+    }
+
+    @Test
+    public void testRejectsUnknownSettings() {
+        assertThatThrownBy(() -> profiling.start("/etc/passwd", 30)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
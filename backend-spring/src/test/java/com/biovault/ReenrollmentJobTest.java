@@ -0,0 +1,206 @@
+package com.biovault;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ReenrollmentJobTest {
+
+    @TempDir
+    Path dir;
+
+    private DisposableServer faceAuth;
+    private final Map<String, Integer> embedCalls = new ConcurrentHashMap<>();
+    private final List<String> activated = new CopyOnWriteArrayList<>();
+    private Path images;
+    private Path work;
+
+    @BeforeEach
+    public void startFaceAuth() throws IOException {
+        images = Files.createDirectories(dir.resolve("known_faces"));
+        work = dir.resolve("work");
+        // Embeds each image as {first byte, image length, 0}; images starting with 'x' have no face
+        faceAuth = HttpServer.create().host("127.0.0.1").port(0)
+            .route(routes -> routes
+                .post("/embed", (request, response) -> request.receive().aggregate().asByteArray().flatMap(frame -> {
+                    int nameLength = ((frame[2] & 0xFF) << 8) | (frame[3] & 0xFF);
+                    String username = new String(frame, 4, nameLength, StandardCharsets.UTF_8);
+                    embedCalls.merge(username, 1, Integer::sum);
+                    int imageLength = frame.length - 8 - nameLength;
+                    byte first = frame[8 + nameLength];
+                    if (first == 'x') {
+                        return response.status(422).header("Content-Type", "application/json")
+                            .sendString(Mono.just("{\"status\":\"error\",\"message\":\"No face found in the image!\"}")).then();
+                    }
+                    return response.header("Content-Type", "application/json")
+                        .sendString(Mono.just("{\"status\":\"success\",\"embedding\":[" + first + "," + imageLength + ",0]}")).then();
+                }))
+                .post("/embeddings/activate", (request, response) -> request.receive().aggregate().asString().flatMap(body -> {
+                    activated.add(body);
+                    return response.header("Content-Type", "application/json")
+                        .sendString(Mono.just("{\"status\":\"success\",\"users\":3}")).then();
+                })))
+            .bindNow();
+    }
+
+    @AfterEach
+    public void stopFaceAuth() {
+        faceAuth.disposeNow();
+    }
+
+    @Test
+    public void testEmbedsEveryImageAndSwitchesTheLocalStore() throws Exception {
+        image("alice", "aa");
+        image("bob", "bbb");
+        image("carol", "cccc");
+        EmbeddingStore store = new EmbeddingStore(dir.resolve("live").toString(), 3);
+        store.open();
+        store.enroll("alice", new float[] { 9, 9, 9 });
+
+        ReenrollmentJob job = job(store);
+        job.start("v2");
+        Map<String, Object> status = await(job);
+
+        assertThat(status.get("state")).isEqualTo(ReenrollmentJob.State.SWITCHED);
+        assertThat(status.get("completed")).isEqualTo(3L);
+        assertThat(activated).containsExactly("{\"version\":\"v2\"}");
+        assertThat(store.get("alice")).containsExactly(97, 2, 0);
+        assertThat(store.get("carol")).containsExactly(99, 4, 0);
+        assertThat(Files.readAllLines(work.resolve("v2.checkpoint"))).hasSize(3);
+        store.close();
+    }
+
+    @Test
+    public void testResumesFromCheckpoint() throws Exception {
+        image("alice", "aa");
+        image("bob", "bbb");
+        Files.createDirectories(work);
+        // alice was done before the crash, and her image hasn't changed since
+        Files.write(work.resolve("v2.checkpoint"), (System.currentTimeMillis() + "\talice\n").getBytes(StandardCharsets.UTF_8));
+
+        ReenrollmentJob job = job(null);
+        job.start("v2");
+        Map<String, Object> status = await(job);
+
+        assertThat(status.get("state")).isEqualTo(ReenrollmentJob.State.SWITCHED);
+        assertThat(status.get("skipped")).isEqualTo(1L);
+        assertThat(status.get("completed")).isEqualTo(1L);
+        assertThat(embedCalls).containsOnlyKeys("bob");
+    }
+
+    @Test
+    public void testRejectedImageBlocksTheSwitchUntilForced() throws Exception {
+        image("alice", "aa");
+        image("xavier", "xx");
+
+        ReenrollmentJob job = job(null);
+        job.start("v2");
+        Map<String, Object> status = await(job);
+
+        assertThat(status.get("state")).isEqualTo(ReenrollmentJob.State.INCOMPLETE);
+        assertThat(status.get("failed")).isEqualTo(1L);
+        // Permanent rejections aren't retried
+        assertThat(embedCalls.get("xavier")).isEqualTo(1);
+        assertThat(activated).isEmpty();
+        assertThat(Files.readString(work.resolve("v2.failed"))).startsWith("xavier\tNo face found");
+
+        job.forceSwitch();
+        assertThat(await(job).get("state")).isEqualTo(ReenrollmentJob.State.SWITCHED);
+        assertThat(activated).hasSize(1);
+    }
+
+    @Test
+    public void testNothingEmbeddedIsNeverSwitched() throws Exception {
+        image("xavier", "xx");
+        EmbeddingStore store = new EmbeddingStore(dir.resolve("live").toString(), 3);
+        store.open();
+        store.enroll("xavier", new float[] { 9, 9, 9 });
+
+        ReenrollmentJob job = job(store);
+        job.start("v2");
+        assertThat(await(job).get("state")).isEqualTo(ReenrollmentJob.State.INCOMPLETE);
+
+        assertThatThrownBy(job::forceSwitch).hasMessageContaining("No images were re-embedded");
+        assertThat(activated).isEmpty();
+        assertThat(store.get("xavier")).containsExactly(9, 9, 9);
+        store.close();
+    }
+
+    @Test
+    public void testNewVersionMayChangeTheEmbeddingSize() throws Exception {
+        image("alice", "aa");
+        EmbeddingStore store = new EmbeddingStore(dir.resolve("live").toString(), 2);
+        store.open();
+        store.enroll("alice", new float[] { 9, 9 });
+
+        ReenrollmentJob job = job(store);
+        job.start("v2");
+
+        assertThat(await(job).get("state")).isEqualTo(ReenrollmentJob.State.SWITCHED);
+        assertThat(store.dimension()).isEqualTo(3);
+        assertThat(store.get("alice")).containsExactly(97, 2, 0);
+        store.close();
+    }
+
+    @Test
+    public void testEnrollmentDuringTheSwitchIsNotLost() throws Exception {
+        image("alice", "aa");
+        EmbeddingStore store = new EmbeddingStore(dir.resolve("live").toString(), 3);
+        store.open();
+        ReenrollmentJob job = job(store);
+
+        // An enrollment is in flight when the job gets to the switch
+        assertThat(job.beginEnrollment()).isTrue();
+        job.start("v2");
+        while (job.beginEnrollment()) {
+            job.endEnrollment();
+            Thread.sleep(5);
+        }
+        // New enrollments are held back; the one in flight saves bob's image, then finishes
+        image("bob", "bbb");
+        job.endEnrollment();
+
+        assertThat(await(job).get("state")).isEqualTo(ReenrollmentJob.State.SWITCHED);
+        assertThat(store.get("bob")).containsExactly(98, 3, 0);
+        assertThat(job.beginEnrollment()).isTrue();
+        job.endEnrollment();
+        store.close();
+    }
+
+    private ReenrollmentJob job(EmbeddingStore store) {
+        WebClient client = WebClient.create("http://" + faceAuth.host() + ":" + faceAuth.port());
+        return new ReenrollmentJob(client, images.toString(), work.toString(), 2, store);
+    }
+
+    private void image(String username, String content) throws IOException {
+        Path file = images.resolve(username + ".jpg");
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        // Older than anything the job checkpoints, so the catch-up pass leaves it alone
+        Files.setLastModifiedTime(file, java.nio.file.attribute.FileTime.fromMillis(System.currentTimeMillis() - 60_000));
+    }
+
+    private static Map<String, Object> await(ReenrollmentJob job) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (job.status().get("state") == ReenrollmentJob.State.RUNNING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        return job.status();
+    }
+}
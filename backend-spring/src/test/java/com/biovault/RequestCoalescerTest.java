@@ -0,0 +1,85 @@
+package com.biovault;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class RequestCoalescerTest {
+
+    private final RequestCoalescer coalescer = new RequestCoalescer();
+
+    @Test
+    public void testConcurrentMonosShareOneCall() {
+        AtomicInteger calls = new AtomicInteger();
+        String key = RequestCoalescer.key("unlock-face", "alice", "proof");
+
+        Mono<String> first = coalescer.coalesce(key, () -> Mono.fromCallable(() -> "result-" + calls.incrementAndGet())
+            .delayElement(Duration.ofMillis(200)));
+        Mono<String> second = coalescer.coalesce(key, () -> Mono.fromCallable(() -> "result-" + calls.incrementAndGet()));
+
+        String[] results = Mono.zip(first, second).map(t -> new String[] { t.getT1(), t.getT2() }).block();
+        assertThat(results).containsExactly("result-1", "result-1");
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(coalescer.inFlightCount()).isZero();
+
+        // Once finished, the next request goes downstream again
+        assertThat(coalescer.coalesce(key, () -> Mono.just("again")).block()).isEqualTo("again");
+    }
+
+    @Test
+    public void testDifferentProofsAreNotCoalesced() {
+        assertThat(RequestCoalescer.key("unlock-face", "alice", "a"))
+            .isNotEqualTo(RequestCoalescer.key("unlock-face", "alice", "b"));
+    }
+
+    @Test
+    public void testBlockingCallersShareOneCall() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        String key = RequestCoalescer.key("request-otp", "alice@test.com", null);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<Integer> leader = pool.submit(() -> coalescer.coalesceBlocking(key, () -> {
+                calls.incrementAndGet();
+                started.countDown();
+                release.await();
+                return 0;
+            }));
+            started.await(5, TimeUnit.SECONDS);
+            Future<Integer> follower = pool.submit(() -> coalescer.coalesceBlocking(key, () -> {
+                calls.incrementAndGet();
+                return 1;
+            }));
+            Thread.sleep(200);
+            release.countDown();
+
+            assertThat(leader.get(5, TimeUnit.SECONDS)).isZero();
+            assertThat(follower.get(5, TimeUnit.SECONDS)).isZero();
+            assertThat(calls.get()).isEqualTo(1);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testLeaderErrorReleasesTheKey() {
+        String key = RequestCoalescer.key("request-otp", "alice", null);
+
+        assertThatThrownBy(() -> coalescer.coalesceBlocking(key, () -> {
+            throw new StackOverflowError();
+        })).isInstanceOf(StackOverflowError.class);
+
+        assertThat(coalescer.inFlightCount()).isZero();
+    }
+}
@@ -0,0 +1,110 @@
+package com.biovault;
+
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Measures time from JVM launch to the first successful POST /api/login, for the
+ * default configuration, the startup profile, and the startup profile with AppCDS.
+ *
+ * Build with {@code mvn -Pstartup package} first, then run from backend-spring:
+ * <pre>
+ * java -cp "target/test-classes:target/lib/*" com.biovault.StartupBenchmark user@example.com [runs]
+ * </pre>
+ * The user must already exist; a fresh OTP is written to the database before each launch.
+ * Database settings can be overridden with -Ddb.url, -Ddb.user and -Ddb.password.
+ */
+public class StartupBenchmark {
+
+    private static final String DB_URL = System.getProperty("db.url", "jdbc:postgresql://localhost:5432/biovault");
+    private static final String DB_USER = System.getProperty("db.user", "biovault_user");
+    private static final String DB_PASSWORD = System.getProperty("db.password", "biovault");
+    private static final int PORT = Integer.getInteger("port", 18080);
+    private static final String OTP = "424242";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: StartupBenchmark <email> [runs]");
+            System.exit(1);
+        }
+        String email = args[0];
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        String classpath = "target/backend-spring-0.0.1-SNAPSHOT.jar" + File.pathSeparator + "target/lib/*";
+
+        report("default", runs, email, List.of("-cp", classpath, "com.biovault.BioVaultApplication"));
+        report("startup", runs, email, List.of("-cp", classpath, "com.biovault.BioVaultApplication",
+            "--spring.profiles.active=startup"));
+        report("startup+cds", runs, email, List.of("-XX:SharedArchiveFile=target/biovault.jsa", "-cp", classpath,
+            "com.biovault.BioVaultApplication", "--spring.profiles.active=startup"));
+    }
+
+    private static void report(String mode, int runs, String email, List<String> launchArgs) throws Exception {
+        List<Long> samples = new ArrayList<>();
+        for (int i = 0; i < runs; i++) {
+            samples.add(timeToFirstLogin(email, launchArgs));
+        }
+        Collections.sort(samples);
+        System.out.printf("%-12s min=%5d ms  median=%5d ms  max=%5d ms%n",
+            mode, samples.get(0), samples.get(samples.size() / 2), samples.get(samples.size() - 1));
+    }
+
+    private static long timeToFirstLogin(String email, List<String> launchArgs) throws Exception {
+        seedOtp(email);
+
+        List<String> command = new ArrayList<>(Arrays.asList("java"));
+        command.addAll(launchArgs);
+        command.add("--server.port=" + PORT);
+
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofMillis(200)).build();
+        HttpRequest login = HttpRequest.newBuilder(URI.create("http://localhost:" + PORT + "/api/login"))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString("{\"email\":\"" + email + "\",\"otp\":\"" + OTP + "\"}"))
+            .build();
+
+        long start = System.nanoTime();
+        Process app = new ProcessBuilder(command).redirectErrorStream(true)
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+        try {
+            while (app.isAlive()) {
+                try {
+                    HttpResponse<String> response = client.send(login, HttpResponse.BodyHandlers.ofString());
+                    if (response.statusCode() == 200) {
+                        return (System.nanoTime() - start) / 1_000_000;
+                    }
+                    // Any other status means the app answered but the login failed; that won't fix itself
+                    throw new IllegalStateException("Login returned " + response.statusCode() + ": " + response.body());
+                } catch (java.io.IOException notListeningYet) {
+                    Thread.sleep(10);
+                }
+            }
+            throw new IllegalStateException("Application exited with code " + app.exitValue());
+        } finally {
+            app.destroy();
+            app.waitFor();
+        }
+    }
+
+    private static void seedOtp(String email) throws Exception {
+        try (Connection conn = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
+             PreparedStatement update = conn.prepareStatement("UPDATE users SET otp = ?, otp_expiry = ? WHERE email = ? AND tenant_id = 'default'")) {
+            update.setString(1, OTP);
+            update.setTimestamp(2, new Timestamp(System.currentTimeMillis() + 5 * 60 * 1000));
+            update.setString(3, email);
+            if (update.executeUpdate() != 1) {
+                throw new IllegalStateException("No user with email " + email);
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.biovault;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TenantQuotasTest {
+
+    @Test
+    public void testZeroLimitRunsEveryCallWithoutTracking() {
+        TenantQuotas quotas = new TenantQuotas(0, 10);
+        for (int i = 0; i < 100; i++) {
+            assertThat(quotas.call("t" + i, () -> "ok")).isEqualTo("ok");
+        }
+        assertThat(quotas.trackedTenants()).isZero();
+    }
+
+    @Test
+    public void testBusyTenantIsRefusedAndIdleTenantsAreForgotten() throws Exception {
+        TenantQuotas quotas = new TenantQuotas(1, 10);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> holder = executor.submit(() -> quotas.call("acme", () -> {
+                started.countDown();
+                await(release);
+                return "done";
+            }));
+            started.await();
+            assertThatThrownBy(() -> quotas.call("acme", () -> "second"))
+                .isInstanceOf(TenantQuotas.TenantBusyException.class);
+            // Another tenant still has its own permit
+            assertThat(quotas.call("globex", () -> "ok")).isEqualTo("ok");
+            release.countDown();
+            assertThat(holder.get()).isEqualTo("done");
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (int i = 0; i < 100; i++) {
+            quotas.call(UUID.randomUUID().toString(), () -> "ok");
+        }
+        assertThat(quotas.trackedTenants()).isZero();
+    }
+
+    @Test
+    public void testUserCacheStopsAddingTenantsAtTheCap() {
+        TenantUserCache cache = new TenantUserCache(10, 60, 2);
+        cache.put("acme", user("alice"));
+        cache.put("globex", user("bob"));
+        cache.put("initech", user("carol"));
+
+        assertThat(cache.cachedTenants()).isEqualTo(2);
+        assertThat(cache.get("initech", "carol")).isNull();
+        assertThat(cache.get("acme", "alice")).isNotNull();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static User user(String username) {
+        User user = new User();
+        user.setUsername(username);
+        return user;
+    }
+}
@@ -0,0 +1,73 @@
+package com.biovault;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class UnlockTicketServiceTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    // 60 s idle TTL, 300 s hard lifetime
+    private final UnlockTicketService tickets = new UnlockTicketService(60, 300, 10, now::get);
+
+    @Test
+    public void testTicketIsBoundToUserAndDevice() {
+        String ticket = tickets.issue("default", "alice", "phone-1", "face", 0.8);
+
+        assertThat(tickets.redeem(ticket, "default", "alice", "phone-2")).isNull();
+        assertThat(tickets.redeem(ticket, "default", "bob", "phone-1")).isNull();
+        assertThat(tickets.redeem(ticket, "acme", "alice", "phone-1")).isNull();
+        assertThat(tickets.redeem(ticket, "default", "alice", "phone-1").getConfidence()).isEqualTo(0.8);
+        assertThat(tickets.issue("default", "alice", null, "face", 0.8)).isNull();
+    }
+
+    @Test
+    public void testExpirySlidesUpToMaxLifetime() {
+        String ticket = tickets.issue("default", "alice", "phone-1", "face", 0.8);
+
+        // Used every 50 s, the ticket keeps sliding...
+        for (int i = 0; i < 5; i++) {
+            now.addAndGet(50_000);
+            assertThat(tickets.redeem(ticket, "default", "alice", "phone-1")).isNotNull();
+        }
+        // ...until the hard lifetime runs out
+        now.addAndGet(50_000);
+        assertThat(tickets.redeem(ticket, "default", "alice", "phone-1")).isNull();
+
+        String idle = tickets.issue("default", "alice", "phone-1", "face", 0.8);
+        now.addAndGet(61_000);
+        assertThat(tickets.redeem(idle, "default", "alice", "phone-1")).isNull();
+    }
+
+    @Test
+    public void testRevocation() {
+        String first = tickets.issue("default", "alice", "phone-1", "face", 0.8);
+        String second = tickets.issue("default", "alice", "tablet", "voice", 0.9);
+        String other = tickets.issue("default", "bob", "phone-1", "face", 0.8);
+
+        tickets.revoke(first);
+        assertThat(tickets.redeem(first, "default", "alice", "phone-1")).isNull();
+
+        tickets.revokeUser("default", "alice");
+        assertThat(tickets.redeem(second, "default", "alice", "tablet")).isNull();
+        assertThat(tickets.redeem(other, "default", "bob", "phone-1")).isNotNull();
+
+        // Tickets issued after the revocation are fine
+        now.incrementAndGet();
+        String fresh = tickets.issue("default", "alice", "phone-1", "face", 0.8);
+        assertThat(tickets.redeem(fresh, "default", "alice", "phone-1")).isNotNull();
+    }
+
+    @Test
+    public void testStatsReportTicketRatio() {
+        String ticket = tickets.issue("default", "alice", "phone-1", "face", 0.8);
+        for (int i = 0; i < 4; i++) {
+            tickets.recordUnlock();
+        }
+        tickets.redeem(ticket, "default", "alice", "phone-1");
+
+        assertThat(tickets.stats().get("servedFromTicketRatio")).isEqualTo(0.25);
+    }
+}
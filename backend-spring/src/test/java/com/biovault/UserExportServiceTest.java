@@ -0,0 +1,109 @@
+package com.biovault;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+// The export manages its own transactions, as it does in production
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class UserExportServiceTest {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @AfterEach
+    public void cleanUp() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    public void testExportStreamsEveryUserAcrossChunksInIdOrder() throws Exception {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            ids.add(save(Tenants.DEFAULT_TENANT, "user" + i).getId());
+        }
+        // Chunks of 3 rows, cleared every 2, so the chunk and clear boundaries are both crossed
+        UserExportService exporter = new UserExportService(userRepository, entityManager, objectMapper, transactionManager, 3, 2);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long written = exporter.export(null, 0, UserExportService.Format.NDJSON, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(written).isEqualTo(7);
+        assertThat(lines).hasSize(7);
+        for (int i = 0; i < lines.length; i++) {
+            Map<?, ?> row = objectMapper.readValue(lines[i], Map.class);
+            assertThat(((Number) row.get("id")).longValue()).isEqualTo(ids.get(i));
+            assertThat(row.get("username")).isEqualTo("user" + i);
+            assertThat(row.containsKey("otp")).isFalse();
+        }
+
+        // Resuming after the fourth row only sends the rest
+        ByteArrayOutputStream resumed = new ByteArrayOutputStream();
+        assertThat(exporter.export(null, ids.get(3), UserExportService.Format.NDJSON, resumed)).isEqualTo(3);
+    }
+
+    @Test
+    public void testCsvExportIsScopedToTenantAndEscaped() throws Exception {
+        save(Tenants.DEFAULT_TENANT, "alice");
+        User bob = save("acme", "bob");
+        bob.setName("=HYPERLINK(\"x\"), Bob");
+        userRepository.save(bob);
+        UserExportService exporter = new UserExportService(userRepository, entityManager, objectMapper, transactionManager, 100, 10);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exporter.export("acme", 0, UserExportService.Format.CSV, out);
+
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo(
+            "id,tenantId,username,email,name,voiceEnrolled\n"
+                + bob.getId() + ",acme,bob,bob@example.com,\"'=HYPERLINK(\"\"x\"\"), Bob\",false\n");
+    }
+
+    @Test
+    public void testListFollowsCursorToTheLastPage() {
+        for (int i = 0; i < 5; i++) {
+            save(Tenants.DEFAULT_TENANT, "user" + i);
+        }
+        UserExportService exporter = new UserExportService(userRepository, entityManager, objectMapper, transactionManager, 100, 10);
+
+        UserExportService.UserPage first = exporter.list(null, 0, 3);
+        assertThat(first.users()).extracting(UserExportService.UserRow::username).containsExactly("user0", "user1", "user2");
+        assertThat(first.nextCursor()).isEqualTo(first.users().get(2).id());
+
+        UserExportService.UserPage last = exporter.list(null, first.nextCursor(), 3);
+        assertThat(last.users()).extracting(UserExportService.UserRow::username).containsExactly("user3", "user4");
+        assertThat(last.nextCursor()).isNull();
+    }
+
+    private User save(String tenantId, String username) {
+        User user = new User();
+        user.setTenantId(tenantId);
+        user.setUsername(username);
+        user.setEmail(username + "@example.com");
+        user.setName(username);
+        return userRepository.save(user);
+    }
+}
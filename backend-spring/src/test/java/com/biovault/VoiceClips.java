@@ -0,0 +1,90 @@
+package com.biovault;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+/**
+ * Synthetic "speech" for voice engine tests: a glottal pulse train at the speaker's
+ * pitch through three formant resonators, cycling through a few vowels.
+ */
+final class VoiceClips {
+
+    /** A speaker's pitch and per-vowel formant frequencies (Hz). */
+    static final class Speaker {
+        final double pitch;
+        final double[][] vowels;
+
+        Speaker(double pitch, double[][] vowels) {
+            this.pitch = pitch;
+            this.vowels = vowels;
+        }
+    }
+
+    static final Speaker LOW = new Speaker(115, new double[][] {
+        { 730, 1090, 2440 }, { 270, 2290, 3010 }, { 530, 1840, 2480 }, { 300, 870, 2240 } });
+    static final Speaker HIGH = new Speaker(215, new double[][] {
+        { 850, 1220, 2810 }, { 310, 2790, 3310 }, { 610, 2330, 2990 }, { 370, 950, 2670 } });
+
+    private VoiceClips() {
+    }
+
+    static byte[] wav(Speaker speaker, double seconds, int sampleRate, long seed) {
+        Random random = new Random(seed);
+        int samples = (int) (seconds * sampleRate);
+        double[] signal = new double[samples];
+        double[][] state = new double[3][2];
+        double phase = 0;
+        int vowelSamples = sampleRate / 4;
+        for (int n = 0; n < samples; n++) {
+            double[] formants = speaker.vowels[(n / vowelSamples) % speaker.vowels.length];
+            // Slight pitch wobble per clip so two recordings of one speaker differ
+            double pitch = speaker.pitch * (1 + 0.03 * Math.sin(2 * Math.PI * 3 * n / sampleRate + seed));
+            phase += pitch / sampleRate;
+            double x = 0;
+            if (phase >= 1) {
+                phase -= 1;
+                x = 1;
+            }
+            x += 0.02 * random.nextGaussian();
+            for (int f = 0; f < 3; f++) {
+                double r = Math.exp(-Math.PI * 80 / sampleRate);
+                double theta = 2 * Math.PI * formants[f] / sampleRate;
+                double y = x + 2 * r * Math.cos(theta) * state[f][0] - r * r * state[f][1];
+                state[f][1] = state[f][0];
+                state[f][0] = y;
+                x = y;
+            }
+            signal[n] = x;
+        }
+        // Normalise to half of full scale
+        double peak = 1e-9;
+        for (double v : signal) {
+            peak = Math.max(peak, Math.abs(v));
+        }
+        short[] pcm = new short[samples];
+        for (int n = 0; n < samples; n++) {
+            pcm[n] = (short) (signal[n] / peak * 16000);
+        }
+        return encode(pcm, sampleRate);
+    }
+
+    static byte[] silence(double seconds, int sampleRate) {
+        return encode(new short[(int) (seconds * sampleRate)], sampleRate);
+    }
+
+    private static byte[] encode(short[] pcm, int sampleRate) {
+        ByteBuffer wav = ByteBuffer.allocate(44 + pcm.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+        wav.put("RIFF".getBytes()).putInt(36 + pcm.length * 2).put("WAVE".getBytes());
+        wav.put("fmt ".getBytes()).putInt(16).putShort((short) 1).putShort((short) 1)
+            .putInt(sampleRate).putInt(sampleRate * 2).putShort((short) 2).putShort((short) 16);
+        wav.put("data".getBytes()).putInt(pcm.length * 2);
+        for (short s : pcm) {
+            wav.putShort(s);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(wav.array());
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,115 @@
+package com.biovault;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Real-time factor and verification latency of {@link LocalVoiceEngine}.
+ *
+ * Run from backend-spring after {@code mvn test-compile}:
+ * <pre>
+ * java -cp "target/test-classes:target/classes:$(cat target/cp.txt)" com.biovault.VoiceEngineBenchmark [dir-of-wav-clips]
+ * </pre>
+ * With a directory, every 16-bit PCM .wav in it is measured; the first clip is enrolled
+ * and the rest are verified against it. Without one, synthetic clips are used.
+ * RTF is processing time divided by audio duration (lower is better; 0.01 means a
+ * 3 s clip takes 30 ms).
+ */
+public class VoiceEngineBenchmark {
+
+    private static final int WARMUP_ROUNDS = 200;
+    private static final int MEASURED_ROUNDS = 50;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, byte[]> clips = args.length > 0 ? load(Paths.get(args[0])) : synthetic();
+        if (clips.isEmpty()) {
+            System.err.println("No .wav clips found");
+            System.exit(1);
+        }
+        LocalVoiceEngine engine = new LocalVoiceEngine(0.9, 0.005, 1.0, 60);
+        float[] enrolled = engine.embed(new ByteArrayInputStream(clips.values().iterator().next()));
+
+        // Let the JIT compile the extraction path before measuring
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            for (byte[] clip : clips.values()) {
+                engine.verify(new ByteArrayInputStream(clip), enrolled);
+            }
+        }
+
+        System.out.printf("%-24s %8s %10s %10s %10s %8s%n", "clip", "seconds", "p50 ms", "p99 ms", "RTF", "score");
+        for (Map.Entry<String, byte[]> clip : clips.entrySet()) {
+            long[] nanos = new long[MEASURED_ROUNDS];
+            VoiceEngine.Verification result = null;
+            for (int i = 0; i < MEASURED_ROUNDS; i++) {
+                long start = System.nanoTime();
+                result = engine.verify(new ByteArrayInputStream(clip.getValue()), enrolled);
+                nanos[i] = System.nanoTime() - start;
+            }
+            Arrays.sort(nanos);
+            double seconds = duration(clip.getValue());
+            double p50 = nanos[MEASURED_ROUNDS / 2] / 1e6;
+            double p99 = nanos[MEASURED_ROUNDS * 99 / 100] / 1e6;
+            System.out.printf("%-24s %8.2f %10.2f %10.2f %10.4f %8.3f%n",
+                clip.getKey(), seconds, p50, p99, p50 / 1000 / seconds, result.score());
+        }
+
+        // Scoring alone, e.g. for one probe against many enrolled speakers
+        int speakers = 100_000;
+        float[][] gallery = new float[speakers][];
+        for (int i = 0; i < speakers; i++) {
+            gallery[i] = enrolled.clone();
+            gallery[i][i % enrolled.length] *= 0.5f;
+        }
+        float best = 0;
+        for (int round = 0; round < 20; round++) {
+            long start = System.nanoTime();
+            for (float[] candidate : gallery) {
+                best = Math.max(best, LocalVoiceEngine.dot(enrolled, candidate));
+            }
+            if (round == 19) {
+                System.out.printf("scoring: %d embeddings in %.2f ms (%.1f ns each, best %.3f)%n",
+                    speakers, (System.nanoTime() - start) / 1e6, (System.nanoTime() - start) / (double) speakers, best);
+            }
+        }
+    }
+
+    private static Map<String, byte[]> load(Path dir) throws IOException {
+        Map<String, byte[]> clips = new LinkedHashMap<>();
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> listing = Files.list(dir)) {
+            listing.filter(p -> p.toString().toLowerCase().endsWith(".wav")).sorted().forEach(files::add);
+        }
+        for (Path file : files) {
+            clips.put(file.getFileName().toString(), Files.readAllBytes(file));
+        }
+        return clips;
+    }
+
+    private static Map<String, byte[]> synthetic() {
+        Map<String, byte[]> clips = new LinkedHashMap<>();
+        clips.put("low-enroll-16k", VoiceClips.wav(VoiceClips.LOW, 5, 16000, 1));
+        clips.put("low-3s-16k", VoiceClips.wav(VoiceClips.LOW, 3, 16000, 2));
+        clips.put("low-3s-48k", VoiceClips.wav(VoiceClips.LOW, 3, 48000, 3));
+        clips.put("high-3s-16k", VoiceClips.wav(VoiceClips.HIGH, 3, 16000, 4));
+        clips.put("high-10s-16k", VoiceClips.wav(VoiceClips.HIGH, 10, 16000, 5));
+        return clips;
+    }
+
+    /** Seconds of audio, assuming the canonical 44-byte header the clips use. */
+    private static double duration(byte[] wav) {
+        ByteBuffer header = ByteBuffer.wrap(wav).order(ByteOrder.LITTLE_ENDIAN);
+        int byteRate = header.getInt(28);
+        return (wav.length - 44) / (double) byteRate;
+    }
+}
@@ -0,0 +1,25 @@
+package com.biovault;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WarmupRunnerTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRunsTrafficAgainstIsolatedStack() throws Exception {
+        WarmupRunner runner = new WarmupRunner(20, 60, new ObjectMapper(), new MockEnvironment());
+
+        Map<String, Object> report = runner.run();
+
+        assertThat(report.get("state")).isEqualTo("done");
+        assertThat(report.get("iterations")).isEqualTo(20);
+        assertThat((long) report.get("compiledMethodsAfter")).isGreaterThanOrEqualTo((long) report.get("compiledMethodsBefore"));
+        assertThat((Map<String, Object>) report.get("unlockMicros")).containsKeys("first", "last", "speedup");
+    }
+}
@@ -0,0 +1,79 @@
+package com.biovault.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ReplicaRoutingDataSourceTest {
+
+    private final Connection primaryConnection = mock(Connection.class);
+    private final Connection replicaConnection = mock(Connection.class);
+
+    @AfterEach
+    public void clearReadOnlyFlag() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+    }
+
+    @Test
+    public void testReadOnlyGoesToHealthyReplica() throws SQLException {
+        ReplicaRoutingDataSource routing = routing(replicaReportingLag(0), 1000);
+
+        assertThat(routing.getConnection()).isSameAs(primaryConnection);
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertThat(routing.getConnection()).isSameAs(replicaConnection);
+    }
+
+    @Test
+    public void testLaggingReplicaFallsBackToPrimary() throws SQLException {
+        ReplicaRoutingDataSource routing = routing(replicaReportingLag(5000), 1000);
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertThat(routing.getConnection()).isSameAs(primaryConnection);
+        assertThat(routing.routeStats().get("replica-0")).containsEntry("healthy", false);
+    }
+
+    @Test
+    public void testUnreachableReplicaFallsBackToPrimary() throws SQLException {
+        DataSource replica = mock(DataSource.class);
+        when(replica.getConnection()).thenThrow(new SQLException("connection refused"));
+        ReplicaRoutingDataSource routing = routing(replica, 1000);
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertThat(routing.getConnection()).isSameAs(primaryConnection);
+    }
+
+    private ReplicaRoutingDataSource routing(DataSource replica, long maxLagMs) throws SQLException {
+        DataSource primary = mock(DataSource.class);
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, Map.of("replica-0", replica), maxLagMs);
+        routing.afterPropertiesSet();
+        routing.refreshLag();
+        return routing;
+    }
+
+    private DataSource replicaReportingLag(double lagMs) throws SQLException {
+        // The lag probe and the routed connection share the same mock connection
+        Statement statement = mock(Statement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(replicaConnection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery(anyString())).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getDouble(1)).thenReturn(lagMs);
+        DataSource replica = mock(DataSource.class);
+        when(replica.getConnection()).thenReturn(replicaConnection);
+        return replica;
+    }
+}
@@ -1,7 +1,12 @@
-from flask import Flask, request, jsonify
+from flask import Flask, request, jsonify, Response
 import os
 import base64
-from face_module import enroll_face, verify_face
+import io
+import struct
+import wire
+import face_module
+from face_module import enroll_face, encode_face, verify_face_distance, verify_encoding_distance
+from utils import storage
 
 app = Flask(__name__)
 @app.route('/')
@@ -30,8 +35,9 @@ def enroll():
             f.write(image_data)
         
         # Enroll the face from the saved image file
-        enroll_face(image_path, username)
-        return jsonify({"status": "success", "message": f"User {username} enrolled successfully."})
+        encoding = enroll_face(image_path, username)
+        # The backend keeps its own copy for warm starts (see EmbeddingStore)
+        return jsonify({"status": "success", "message": f"User {username} enrolled successfully.", "embedding": encoding})
     except Exception as e:
         return jsonify({"status": "error", "message": str(e)}), 500
 
@@ -52,16 +58,77 @@ def verify():
             f.write(image_data)
         
         # Verify the face
-        result = verify_face(verify_image_path, username)
+        result, distance = verify_face_distance(verify_image_path, username)
         
         # Clean up the temporary image
         if os.path.exists(verify_image_path):
             os.remove(verify_image_path)
             
         if result:
-            return jsonify({"status": "success", "message": "Face verified!"})
+            return jsonify({"status": "success", "message": "Face verified!", "distance": distance})
         else:
-            return jsonify({"status": "fail", "message": "Face mismatch or not found."})
+            return jsonify({"status": "fail", "message": "Face mismatch or not found.", "distance": distance})
+    except Exception as e:
+        return jsonify({"status": "error", "message": str(e)}), 500
+
+@app.route("/verify-bin", methods=["POST"])
+def verify_bin():
+    """Binary counterpart of /verify, see wire.py for the frame layout"""
+    try:
+        kind, username, payload = wire.decode_request(request.get_data())
+    except Exception as e:
+        return Response(wire.encode_response(wire.STATUS_ERROR, message=str(e)), status=400, mimetype=wire.CONTENT_TYPE)
+
+    try:
+        if kind == wire.KIND_EMBEDDING:
+            result, distance = verify_encoding_distance(payload, username)
+        else:
+            verify_image_path = "data/verify_temp.jpg"
+            with open(verify_image_path, "wb") as f:
+                f.write(payload)
+            result, distance = verify_face_distance(verify_image_path, username)
+            if os.path.exists(verify_image_path):
+                os.remove(verify_image_path)
+
+        status = wire.STATUS_MATCH if result else wire.STATUS_NO_MATCH
+        return Response(wire.encode_response(status, distance), mimetype=wire.CONTENT_TYPE)
+    except Exception as e:
+        return Response(wire.encode_response(wire.STATUS_ERROR, message=str(e)), status=500, mimetype=wire.CONTENT_TYPE)
+
+@app.route("/embed", methods=["POST"])
+def embed():
+    """Encode an enrollment image into a shadow embedding version without touching the
+    active one; used by the backend's bulk re-enrollment (takes a wire.py image frame)"""
+    version = request.args.get("version")
+    if not version:
+        return jsonify({"status": "error", "message": "Missing version"}), 400
+    if version == storage.active_version():
+        return jsonify({"status": "error", "message": f"Version {version} is active; re-embed into a new version"}), 409
+    try:
+        kind, username, payload = wire.decode_request(request.get_data())
+        if kind != wire.KIND_IMAGE:
+            raise ValueError("Expected an image frame")
+        # Decoded in memory, so parallel requests don't share a temp file
+        encoding = encode_face(io.BytesIO(payload))
+    except (ValueError, OSError, struct.error) as e:
+        # Bad frame, unreadable image or no face: retrying won't help
+        return jsonify({"status": "error", "message": str(e)}), 422
+
+    try:
+        storage.save_embedding(username, encoding, version=version)
+        return jsonify({"status": "success", "embedding": encoding})
+    except Exception as e:
+        return jsonify({"status": "error", "message": str(e)}), 500
+
+@app.route("/embeddings/activate", methods=["POST"])
+def activate_embeddings():
+    """Switch verification to a fully re-embedded version"""
+    data = request.get_json()
+    if not data or "version" not in data:
+        return jsonify({"status": "error", "message": "Missing version"}), 400
+    try:
+        count = face_module.activate_embeddings(data["version"])
+        return jsonify({"status": "success", "version": data["version"], "users": count})
     except Exception as e:
         return jsonify({"status": "error", "message": str(e)}), 500
 
@@ -11,27 +11,48 @@ from utils import storage
 # Load embeddings from storage
 known_faces = storage.load_embeddings()
 
-def enroll_face(image_path, username):
-    """Enroll a new face and save encoding"""
-    image = face_recognition.load_image_file(image_path)
-    encodings = face_recognition.face_encodings(image)
+def encode_face(image):
+    """Compute the encoding of the face in an image (a path or file object) without storing it"""
+    encodings = face_recognition.face_encodings(face_recognition.load_image_file(image))
     if len(encodings) == 0:
         raise ValueError("No face found in the image!")
-    
-    encoding = encodings[0]
-    storage.save_embedding(username, encoding.tolist())
-    return True
+    return encodings[0].tolist()
+
+def enroll_face(image_path, username):
+    """Enroll a new face and save encoding"""
+    encoding = encode_face(image_path)
+    storage.save_embedding(username, encoding)
+    return encoding
+
+def activate_embeddings(version):
+    """Switch verification to another embedding version; returns how many users it has"""
+    global known_faces
+    faces = storage.load_embeddings(version)
+    storage.activate_version(version)
+    # A single assignment, so concurrent verifications see either the old or the new set
+    known_faces = faces
+    return len(faces)
 
 def verify_face(image_path, username, tolerance=0.5):
     """Verify a face against stored embeddings"""
+    matched, _ = verify_face_distance(image_path, username, tolerance)
+    return matched
+
+def verify_face_distance(image_path, username, tolerance=0.5):
+    """Verify a face image and also return its distance to the stored embedding"""
     image = face_recognition.load_image_file(image_path)
     encodings = face_recognition.face_encodings(image)
     
     if len(encodings) == 0:
-        return False
-    
-    input_encoding = encodings[0]
+        return False, None
+
+    return verify_encoding_distance(encodings[0], username, tolerance)
+
+def verify_encoding_distance(input_encoding, username, tolerance=0.5):
+    """Compare an already computed encoding; returns (matched, distance)"""
+    if username not in known_faces:
+        return False, None
     stored_encoding = np.array(known_faces.get(username))
 
-    results = face_recognition.compare_faces([stored_encoding], input_encoding, tolerance)
-    return results[0]
+    distance = float(face_recognition.face_distance([stored_encoding], np.asarray(input_encoding))[0])
+    return distance <= tolerance, distance
@@ -45,21 +45,38 @@ if not os.path.exists(KEY_FILE):
 
 cipher = Fernet(load_key())
 
-def save_embedding(username, encoding):
-    """Save face embedding securely in MongoDB"""
+# Embeddings are versioned by encoder model. The original collection holds the
+# default version; re-enrollment writes a new model's embeddings into a shadow
+# collection, and activating it switches verification over in one step.
+DEFAULT_VERSION = "v1"
+META_ID = "embedding_version"
+
+def active_version():
+    doc = db['meta'].find_one({'_id': META_ID})
+    return doc['version'] if doc else DEFAULT_VERSION
+
+def embeddings_collection(version=None):
+    version = version or active_version()
+    return collection if version == DEFAULT_VERSION else db[f'embeddings_{version}']
+
+def activate_version(version):
+    db['meta'].update_one({'_id': META_ID}, {'$set': {'version': version}}, upsert=True)
+
+def save_embedding(username, encoding, version=None):
+    """Save face embedding securely in MongoDB (the active version unless one is given)"""
     # Encrypt the encoding
     encrypted_encoding = cipher.encrypt(json.dumps(encoding).encode())
     # Store in MongoDB
-    collection.update_one(
+    embeddings_collection(version).update_one(
         {'username': username},
         {'$set': {'username': username, 'encoding': encrypted_encoding}},
         upsert=True
     )
 
-def load_embeddings():
-    """Load all embeddings from MongoDB"""
+def load_embeddings(version=None):
+    """Load all embeddings of a version (the active one by default) from MongoDB"""
     embeddings = {}
-    for doc in collection.find():
+    for doc in embeddings_collection(version).find():
         username = doc['username']
         encrypted_encoding = doc['encoding']
         # Decrypt the encoding
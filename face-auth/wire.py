@@ -0,0 +1,48 @@
+"""Compact binary framing for the backend <-> face-auth verify call.
+
+All integers and floats are big-endian.
+
+Request:  u8 version | u8 kind | u16 username length | username (UTF-8)
+          | u32 payload length | payload
+          kind 1 = raw image bytes, kind 2 = float32 embedding
+Response: u8 version | u8 status | f32 distance | f32 confidence
+          | u16 message length | message (UTF-8)
+          status 0 = match, 1 = no match, 2 = error; distance is NaN when unknown
+"""
+import struct
+
+import numpy as np
+
+VERSION = 1
+KIND_IMAGE = 1
+KIND_EMBEDDING = 2
+STATUS_MATCH = 0
+STATUS_NO_MATCH = 1
+STATUS_ERROR = 2
+CONTENT_TYPE = "application/x-biovault-face"
+
+
+def decode_request(frame):
+    version, kind, name_len = struct.unpack_from(">BBH", frame, 0)
+    if version != VERSION:
+        raise ValueError(f"Unsupported frame version {version}")
+    offset = 4
+    username = frame[offset:offset + name_len].decode("utf-8")
+    offset += name_len
+    (payload_len,) = struct.unpack_from(">I", frame, offset)
+    offset += 4
+    payload = frame[offset:offset + payload_len]
+    if len(payload) != payload_len:
+        raise ValueError("Truncated frame")
+    if kind == KIND_EMBEDDING:
+        payload = np.frombuffer(payload, dtype=">f4").astype(np.float64)
+    elif kind != KIND_IMAGE:
+        raise ValueError(f"Unknown payload kind {kind}")
+    return kind, username, payload
+
+
+def encode_response(status, distance=None, message=""):
+    distance = float("nan") if distance is None else distance
+    confidence = 0.0 if distance != distance else max(0.0, 1.0 - distance)
+    encoded = message.encode("utf-8")
+    return struct.pack(">BBffH", VERSION, status, distance, confidence, len(encoded)) + encoded